@@ -0,0 +1,154 @@
+package com.collabstack.editor.chunking;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the prompt context from retrieved chunks. Chunks overlap their neighbours (see
+ * {@link SemanticChunker}), so sending them verbatim repeats text; instead chunks of the same
+ * document with consecutive {@code chunkIndex} are merged into one passage, trimming each chunk by
+ * its stored {@code overlapChars}, chunks whose text is already part of a selected passage are
+ * dropped, and chunks are taken in rank order while the context stays within {@code maxTokens}.
+ * A chunk whose overlap is unknown starts a new passage rather than being joined by guesswork.
+ * <p>
+ * Passages are ordered by their best-ranked chunk; text inside a passage keeps document order.
+ */
+public final class ContextPacker {
+
+    public static final String SEPARATOR = "\n\n---\n\n";
+
+    /**
+     * @param retrievedTokens tokens the chunks would have taken joined verbatim
+     * @param packedTokens    tokens of {@code context}
+     */
+    public record Packed(String context, int chunks, int passages, int retrievedTokens, int packedTokens) {}
+
+    private record Passage(String documentId, int firstIndex, int lastIndex, int bestRank, String text) {}
+
+    private final int maxTokens;
+    private final TokenCountEstimator tokenEstimator;
+
+    public ContextPacker(int maxTokens, TokenCountEstimator tokenEstimator) {
+        this.maxTokens = maxTokens;
+        this.tokenEstimator = tokenEstimator;
+    }
+
+    /**
+     * @param ranked chunks in rank order, with documentId, chunkIndex and (where known) overlapChars metadata
+     */
+    public Packed pack(List<Document> ranked) {
+        int retrievedTokens = ranked.isEmpty() ? 0 : tokenEstimator.estimate(
+                ranked.stream().map(Document::getText).collect(Collectors.joining(SEPARATOR)));
+
+        List<Integer> selected = new ArrayList<>();
+        List<Passage> passages = List.of();
+        int tokens = 0;
+        for (int rank = 0; rank < ranked.size(); rank++) {
+            String text = ranked.get(rank).getText();
+            if (text == null || text.isBlank() || containedIn(passages, text)) {
+                continue;
+            }
+            selected.add(rank);
+            List<Passage> candidate = merge(ranked, selected);
+            int candidateTokens = estimate(candidate);
+            // The best chunk is always sent, even alone over budget; later ones only if they fit
+            if (candidateTokens > maxTokens && !passages.isEmpty()) {
+                selected.remove(selected.size() - 1);
+                continue;
+            }
+            passages = candidate;
+            tokens = candidateTokens;
+        }
+
+        String context = passages.stream().map(Passage::text).collect(Collectors.joining(SEPARATOR));
+        return new Packed(context, selected.size(), passages.size(), retrievedTokens, tokens);
+    }
+
+    private List<Passage> merge(List<Document> ranked, List<Integer> selected) {
+        Map<String, List<Integer>> byDocument = new LinkedHashMap<>();
+        for (int rank : selected) {
+            byDocument.computeIfAbsent(documentId(ranked.get(rank)), k -> new ArrayList<>()).add(rank);
+        }
+        List<Passage> passages = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> entry : byDocument.entrySet()) {
+            List<Integer> ranks = new ArrayList<>(entry.getValue());
+            ranks.sort(Comparator.comparingInt(rank -> chunkIndex(ranked.get(rank))));
+            Passage current = null;
+            for (int rank : ranks) {
+                Document chunk = ranked.get(rank);
+                int index = chunkIndex(chunk);
+                int overlap = intMetadata(chunk, "overlapChars");
+                if (current != null && index >= 0 && index == current.lastIndex() + 1 && overlap >= 0) {
+                    String text = chunk.getText();
+                    String merged = current.text() + text.substring(Math.min(overlap, text.length()));
+                    current = new Passage(current.documentId(), current.firstIndex(), index,
+                            Math.min(current.bestRank(), rank), merged);
+                } else {
+                    if (current != null) {
+                        passages.add(current);
+                    }
+                    current = new Passage(entry.getKey(), index, index, rank, chunk.getText());
+                }
+            }
+            if (current != null) {
+                passages.add(current);
+            }
+        }
+        passages.sort(Comparator.comparingInt(Passage::bestRank));
+        return passages;
+    }
+
+    private int estimate(List<Passage> passages) {
+        int tokens = 0;
+        for (Passage passage : passages) {
+            tokens += tokenEstimator.estimate(passage.text());
+        }
+        return passages.isEmpty() ? 0 : tokens + (passages.size() - 1) * tokenEstimator.estimate(SEPARATOR);
+    }
+
+    private static boolean containedIn(List<Passage> passages, String text) {
+        for (Passage passage : passages) {
+            if (passage.text().contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String documentId(Document chunk) {
+        Object documentId = chunk.getMetadata().get("documentId");
+        return documentId != null ? documentId.toString() : "";
+    }
+
+    /**
+     * The chunk's index, or -1 if unknown (such a chunk is never merged).
+     */
+    private static int chunkIndex(Document chunk) {
+        return intMetadata(chunk, "chunkIndex");
+    }
+
+    /**
+     * A non-negative int metadata value, or -1 if missing or not a number.
+     */
+    private static int intMetadata(Document chunk, String key) {
+        Object value = chunk.getMetadata().get(key);
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.toString());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
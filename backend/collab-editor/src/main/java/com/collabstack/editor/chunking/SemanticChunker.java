@@ -0,0 +1,257 @@
+package com.collabstack.editor.chunking;
+
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Splits text into overlapping chunks of at most {@code maxChars} characters (and, if a token
+ * estimator is configured, at most {@code maxTokens} tokens), cutting at the strongest boundary
+ * available in the second half of the window: before a markdown heading, then a paragraph break,
+ * a line break, a sentence end, whitespace, and only as a last resort mid-word. The next chunk
+ * starts about {@code overlapChars} before the cut, moved forward to a sentence or word start.
+ * <p>
+ * Every decision only looks at the text just around the cut, so boundaries are content-defined:
+ * after an edit chunking re-aligns with the previous result, which incremental re-indexing relies on.
+ * <p>
+ * Chunks are produced lazily, either by iterating over a {@link CharSequence} ({@link #chunks},
+ * {@link #stream}) or by pushing text through a {@link Feeder} (or a {@link Reader}); both yield
+ * identical chunks for the same text. Chunk text is a view until {@link Chunk#content()} is called.
+ * Each chunk carries its {@code overlap}: how many of its leading chars repeat the end of the
+ * previous chunk, so neighbours can be joined without matching text.
+ */
+public final class SemanticChunker {
+
+    // Chars past the window that boundary checks may look at (sentence end followed by space, heading marker)
+    private static final int LOOKAHEAD = 2;
+
+    private enum Boundary { HEADING, PARAGRAPH, LINE, SENTENCE, WORD }
+
+    public record Chunk(int index, long start, int overlap, CharSequence text) {
+        public String content() {
+            return text.toString();
+        }
+    }
+
+    private final int maxChars;
+    private final int overlapChars;
+    private final int maxTokens;
+    private final TokenCountEstimator tokenEstimator;
+
+    public SemanticChunker(int maxChars, int overlapChars) {
+        this(maxChars, overlapChars, 0, null);
+    }
+
+    /**
+     * @param maxTokens      token budget per chunk; 0 disables token counting
+     * @param tokenEstimator required when {@code maxTokens > 0}
+     */
+    public SemanticChunker(int maxChars, int overlapChars, int maxTokens, TokenCountEstimator tokenEstimator) {
+        if (overlapChars >= maxChars / 2) {
+            throw new IllegalArgumentException("overlapChars must be less than half of maxChars");
+        }
+        if (maxTokens > 0 && tokenEstimator == null) {
+            throw new IllegalArgumentException("A token estimator is required when maxTokens is set");
+        }
+        this.maxChars = maxChars;
+        this.overlapChars = overlapChars;
+        this.maxTokens = maxTokens;
+        this.tokenEstimator = tokenEstimator;
+    }
+
+    public Iterator<Chunk> chunks(CharSequence text) {
+        return new Iterator<>() {
+            private int start = 0;
+            private int index = 0;
+            private int carried = 0;
+            private boolean done = text.isEmpty();
+
+            @Override
+            public boolean hasNext() {
+                return !done;
+            }
+
+            @Override
+            public Chunk next() {
+                if (done) {
+                    throw new NoSuchElementException();
+                }
+                if (fits(text, start, text.length())) {
+                    done = true;
+                    return new Chunk(index, start, carried, CharBuffer.wrap(text, start, text.length()));
+                }
+                int[] cut = cut(text, start, Math.min(text.length(), start + maxChars + LOOKAHEAD));
+                Chunk chunk = new Chunk(index++, start, carried, CharBuffer.wrap(text, start, cut[0]));
+                start = cut[1];
+                carried = cut[0] - cut[1];
+                // The rest is all overlap of this chunk
+                done = cut[0] == text.length();
+                return chunk;
+            }
+        };
+    }
+
+    public Stream<Chunk> stream(CharSequence text) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks(text), Spliterator.ORDERED), false);
+    }
+
+    public Feeder feeder(Consumer<Chunk> sink) {
+        return new Feeder(sink);
+    }
+
+    /**
+     * Reads the whole stream through a {@link Feeder}, holding at most one window plus one buffer.
+     */
+    public int chunk(Reader reader, Consumer<Chunk> sink) throws IOException {
+        Feeder feeder = new Feeder(sink);
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            feeder.append(CharBuffer.wrap(buffer, 0, read));
+        }
+        return feeder.finish();
+    }
+
+    /**
+     * Push-based chunking for streamed text: emits each chunk as soon as it is decided.
+     */
+    public final class Feeder {
+
+        private final Consumer<Chunk> sink;
+        private final StringBuilder window = new StringBuilder(maxChars * 2);
+        // Absolute offset of window[0]
+        private long windowStart = 0;
+        private int index = 0;
+        // Leading chars of the window already emitted as the previous chunk's overlap
+        private int carried = 0;
+
+        private Feeder(Consumer<Chunk> sink) {
+            this.sink = sink;
+        }
+
+        public void append(CharSequence text) {
+            int offset = 0;
+            while (offset < text.length()) {
+                // Feed at most one window at a time so the buffer stays bounded
+                int take = Math.min(text.length() - offset, maxChars);
+                window.append(text, offset, offset + take);
+                offset += take;
+                // More than a full window plus lookahead is buffered, so this can't be the tail
+                while (window.length() > maxChars + LOOKAHEAD) {
+                    emitCut();
+                }
+            }
+        }
+
+        /**
+         * Emits what is left; returns the total number of chunks.
+         */
+        public int finish() {
+            while (window.length() > carried && !fits(window, 0, window.length())) {
+                emitCut();
+            }
+            if (window.length() > carried) {
+                sink.accept(new Chunk(index++, windowStart, carried, window.toString()));
+            }
+            window.setLength(0);
+            return index;
+        }
+
+        private void emitCut() {
+            int[] cut = cut(window, 0, Math.min(window.length(), maxChars + LOOKAHEAD));
+            sink.accept(new Chunk(index++, windowStart, carried, window.substring(0, cut[0])));
+            window.delete(0, cut[1]);
+            windowStart += cut[1];
+            carried = cut[0] - cut[1];
+        }
+    }
+
+    /**
+     * Returns {end of this chunk, start of the next one}, both absolute offsets into {@code text}.
+     * Only chars in [start, limit) are inspected.
+     */
+    private int[] cut(CharSequence text, int start, int limit) {
+        int end = start + findCut(text, start, Math.min(start + maxChars, limit), limit);
+        if (maxTokens > 0) {
+            // Shrink towards the token budget, proportionally, until it fits
+            int tokens;
+            while ((tokens = tokenEstimator.estimate(text.subSequence(start, end).toString())) > maxTokens
+                    && end - start > overlapChars * 2 + 1) {
+                int target = start + Math.max(overlapChars * 2 + 1, (int) ((long) (end - start) * maxTokens * 9 / (tokens * 10L)));
+                end = start + findCut(text, start, target, end);
+            }
+        }
+        return new int[]{end, start + nextStart(text, start, end - start)};
+    }
+
+    /**
+     * Whether [start, end) can be emitted as the final chunk as-is.
+     */
+    private boolean fits(CharSequence text, int start, int end) {
+        return end - start <= maxChars
+                && (maxTokens == 0 || tokenEstimator.estimate(text.subSequence(start, end).toString()) <= maxTokens);
+    }
+
+    /**
+     * Length of the chunk starting at {@code start} and ending no later than {@code max}:
+     * the last position of the strongest boundary kind found in the second half.
+     */
+    private int findCut(CharSequence text, int start, int max, int limit) {
+        int min = start + (max - start) / 2;
+        for (Boundary kind : Boundary.values()) {
+            for (int i = max; i > min; i--) {
+                if (isBoundary(text, i, kind, limit)) {
+                    return i - start;
+                }
+            }
+        }
+        return max - start;
+    }
+
+    /**
+     * Whether a cut right before position {@code i} is a boundary of the given kind.
+     */
+    private static boolean isBoundary(CharSequence text, int i, Boundary kind, int limit) {
+        char before = text.charAt(i - 1);
+        char at = i < limit ? text.charAt(i) : '\0';
+        return switch (kind) {
+            case HEADING -> before == '\n' && at == '#';
+            case PARAGRAPH -> before == '\n' && i >= 2 && text.charAt(i - 2) == '\n';
+            case LINE -> before == '\n';
+            case SENTENCE -> Character.isWhitespace(before) && i >= 2 && isSentenceEnd(text.charAt(i - 2));
+            case WORD -> Character.isWhitespace(before);
+        };
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    /**
+     * Offset (from {@code start}) of the next chunk: about overlapChars before the cut, moved
+     * forward to the first sentence start in the overlap, else the first word start.
+     */
+    private int nextStart(CharSequence text, int start, int cut) {
+        int from = Math.max(cut - overlapChars, 1);
+        for (int i = from; i < cut; i++) {
+            if (isBoundary(text, start + i, Boundary.SENTENCE, start + cut)) {
+                return i;
+            }
+        }
+        for (int i = from; i < cut; i++) {
+            if (Character.isWhitespace(text.charAt(start + i - 1))) {
+                return i;
+            }
+        }
+        return from;
+    }
+}
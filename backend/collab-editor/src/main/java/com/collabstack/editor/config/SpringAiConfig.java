@@ -1,18 +1,70 @@
 package com.collabstack.editor.config;
 
+import com.collabstack.editor.chunking.ContextPacker;
+import com.collabstack.editor.chunking.SemanticChunker;
+import com.collabstack.editor.embedding.BatchedEmbeddingModel;
+import com.collabstack.editor.embedding.CachingEmbeddingModel;
+import com.collabstack.editor.embedding.EmbeddingBatcher;
+import com.collabstack.editor.embedding.GuardedEmbeddingModel;
+import com.collabstack.editor.repository.EmbeddingCacheRepository;
+import com.collabstack.editor.resilience.ProviderBulkheads;
+import com.collabstack.editor.vectorstore.HnswVectorStore;
+import com.collabstack.editor.vectorstore.DocumentPgVectorStore;
+import com.collabstack.editor.vectorstore.VectorQuantization;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore.PgIndexType;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
 
 @Configuration
 public class SpringAiConfig {
 
+    @Value("${spring.ai.openai.embedding.options.model:default}")
+    private String embeddingModelName;
+
+    @Value("${app.rag.embedding-cache.enabled:true}")
+    private boolean embeddingCacheEnabled;
+
+    @Value("${app.rag.embedding-cache.max-entries:200000}")
+    private long embeddingCacheMaxEntries;
+
+    @Value("${app.rag.embedding-cache.eviction-check-interval:1000}")
+    private int embeddingCacheEvictionCheckInterval;
+
+    @Value("${app.rag.embedding-cache.max-pending-writes:1000}")
+    private int embeddingCacheMaxPendingWrites;
+
+    // pgvector (default) or hnsw (in-process, see HnswVectorStore)
+    @Value("${app.rag.vector-store:pgvector}")
+    private String vectorStoreType;
+
+    @Value("${app.rag.quantization.mode:none}")
+    private String quantizationMode;
+
+    @Value("${app.rag.quantization.rescore-factor:4}")
+    private int quantizationRescoreFactor;
+
+    @Value("${app.rag.exact-search-max-vectors:5000}")
+    private int exactSearchMaxVectors;
+
     /**
      * ChatClient is always available (requires only OpenAI API key).
      */
@@ -21,14 +73,73 @@ public class SpringAiConfig {
         return ChatClient.builder(chatModel).build();
     }
 
+    /**
+     * Chunker used for indexing (app.rag.chunking.*). Always available: chunks are stored even without RAG.
+     * Changing these settings changes chunk boundaries, so the next re-index of each document re-embeds it.
+     */
+    @Bean
+    public SemanticChunker semanticChunker(@Value("${app.rag.chunking.max-chars:800}") int maxChars,
+                                           @Value("${app.rag.chunking.overlap-chars:100}") int overlapChars,
+                                           @Value("${app.rag.chunking.max-tokens:0}") int maxTokens) {
+        return maxTokens > 0
+                ? new SemanticChunker(maxChars, overlapChars, maxTokens, new JTokkitTokenCountEstimator())
+                : new SemanticChunker(maxChars, overlapChars);
+    }
+
+    /**
+     * Builds the chat prompt context from retrieved chunks within app.rag.context.max-tokens.
+     */
+    @Bean
+    public ContextPacker contextPacker(@Value("${app.rag.context.max-tokens:2000}") int maxTokens) {
+        return new ContextPacker(maxTokens, new JTokkitTokenCountEstimator());
+    }
+
+    /**
+     * Shares embedding requests between concurrent indexing runs (app.rag.embedding-batch.*).
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = {"app.rag.enabled", "app.rag.embedding-batch.enabled"}, havingValue = "true")
+    public EmbeddingBatcher embeddingBatcher(EmbeddingModel embeddingModel, ProviderBulkheads providerBulkheads,
+                                             MeterRegistry meterRegistry,
+                                             @Value("${app.rag.embedding-batch.max-batch-size:100}") int maxBatchSize,
+                                             @Value("${app.rag.embedding-batch.max-wait-ms:25}") long maxWaitMs,
+                                             @Value("${app.rag.embedding-batch.max-concurrency:4}") int maxConcurrency,
+                                             @Value("${app.rag.embedding-batch.result-timeout-ms:60000}") long resultTimeoutMs) {
+        return new EmbeddingBatcher(new GuardedEmbeddingModel(embeddingModel, providerBulkheads.embedding()), maxBatchSize, Duration.ofMillis(maxWaitMs), maxConcurrency,
+                Duration.ofMillis(resultTimeoutMs), meterRegistry);
+    }
+
     /**
      * VectorStore only created when app.rag.enabled=true.
-     * Requires pgvector extension installed in PostgreSQL.
-     * Enable in Docker environment where pgvector/pgvector:pg16 image is used.
+     * The default pgvector store requires the pgvector extension installed in PostgreSQL
+     * (Docker environment uses the pgvector/pgvector:pg16 image); app.rag.vector-store=hnsw
+     * keeps per-document HNSW graphs in process instead (app.rag.hnsw.*).
+     * pgvector searches go through {@link DocumentPgVectorStore}: per-document filtering on an indexed
+     * document_id column, exact search for small documents and, with app.rag.quantization.mode=halfvec|binary,
+     * a quantized HNSW index whose candidates are rescored against the float32 vectors.
      */
     @Bean
     @ConditionalOnProperty(name = "app.rag.enabled", havingValue = "true")
-    public VectorStore vectorStore(EmbeddingModel embeddingModel, JdbcTemplate jdbcTemplate) {
+    public VectorStore vectorStore(EmbeddingModel embeddingModel, JdbcTemplate jdbcTemplate,
+                                   EmbeddingCacheRepository embeddingCacheRepository, MeterRegistry meterRegistry,
+                                   ObjectProvider<EmbeddingBatcher> embeddingBatcher, ObjectMapper objectMapper,
+                                   ProviderBulkheads providerBulkheads, PlatformTransactionManager transactionManager,
+                                   @Value("${app.rag.hnsw.directory:./data/hnsw}") String hnswDirectory,
+                                   @Value("${app.rag.hnsw.max-loaded-documents:500}") int hnswMaxLoadedDocuments,
+                                   @Value("${app.rag.hnsw.max-search-documents:50}") int hnswMaxSearchDocuments,
+                                   @Value("${app.rag.hnsw.m:16}") int hnswM,
+                                   @Value("${app.rag.hnsw.ef-construction:100}") int hnswEfConstruction,
+                                   @Value("${app.rag.hnsw.ef-search:64}") int hnswEfSearch) {
+        // Questions are embedded directly: they are rarely repeated and would only fill the cache
+        EmbeddingModel queryModel = new GuardedEmbeddingModel(embeddingModel, providerBulkheads.queryEmbedding());
+        EmbeddingModel documentModel = documentEmbeddingModel(
+                new GuardedEmbeddingModel(embeddingModel, providerBulkheads.embedding()), embeddingCacheRepository,
+                meterRegistry, embeddingBatcher);
+        if ("hnsw".equals(vectorStoreType)) {
+            return new HnswVectorStore(documentModel, queryModel, new NamedParameterJdbcTemplate(jdbcTemplate),
+                    Path.of(hnswDirectory), 768, hnswMaxLoadedDocuments, hnswMaxSearchDocuments, hnswM,
+                    hnswEfConstruction, hnswEfSearch);
+        }
         try {
             // Try to enable pgvector extension if not already enabled
             jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
@@ -37,9 +148,43 @@ public class SpringAiConfig {
                 "pgvector extension is not installed. Please install pgvector: " +
                 "https://github.com/pgvector/pgvector#installation", e);
         }
-        return PgVectorStore.builder(jdbcTemplate, embeddingModel)
+        VectorQuantization quantization = VectorQuantization.valueOf(quantizationMode.toUpperCase(Locale.ROOT));
+        PgVectorStore pgVectorStore = PgVectorStore.builder(jdbcTemplate, documentModel)
                 .dimensions(768)
                 .initializeSchema(true)
+                .indexType(quantization == VectorQuantization.NONE ? PgIndexType.HNSW : PgIndexType.NONE)
                 .build();
+        // The wrapper is the bean, so it runs the wrapped store's schema initialization itself
+        DocumentPgVectorStore documentStore = new DocumentPgVectorStore(pgVectorStore,
+                new NamedParameterJdbcTemplate(jdbcTemplate), readOnlyTransactions(transactionManager),
+                documentModel, queryModel, objectMapper, quantization, 768, quantizationRescoreFactor, exactSearchMaxVectors);
+        documentStore.initializeSchema();
+        return documentStore;
+    }
+
+    private static TransactionTemplate readOnlyTransactions(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    /**
+     * Model for chunk text, which is what the cache and the batcher are for.
+     *
+     * @param embeddingModel the provider model, already behind the embedding bulkhead
+     */
+    private EmbeddingModel documentEmbeddingModel(EmbeddingModel embeddingModel,
+                                                   EmbeddingCacheRepository embeddingCacheRepository,
+                                                   MeterRegistry meterRegistry,
+                                                   ObjectProvider<EmbeddingBatcher> embeddingBatcher) {
+        // Cache misses from concurrent runs are micro-batched into provider-sized requests
+        EmbeddingBatcher batcher = embeddingBatcher.getIfAvailable();
+        EmbeddingModel batchedModel = batcher != null ? new BatchedEmbeddingModel(batcher, embeddingModel) : embeddingModel;
+        // Identical chunk text (boilerplate, forks, unchanged re-index) is embedded once
+        return embeddingCacheEnabled
+                ? new CachingEmbeddingModel(batchedModel, embeddingCacheRepository, embeddingModelName,
+                        embeddingCacheMaxEntries, embeddingCacheEvictionCheckInterval, embeddingCacheMaxPendingWrites,
+                        meterRegistry)
+                : batchedModel;
     }
 }
@@ -2,21 +2,61 @@ package com.collabstack.editor.config;
 
 import com.collabstack.editor.websocket.DocumentWebSocketHandler;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocket
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
     private final DocumentWebSocketHandler documentWebSocketHandler;
+    private final WebSocketProperties webSocketProperties;
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(documentWebSocketHandler, "/ws/documents/**")
+                .setHandshakeHandler(new CompressionAwareHandshakeHandler())
                 .setAllowedOriginPatterns("*");
     }
+
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(webSocketProperties.getMaxTextMessageBufferSize());
+        container.setMaxBinaryMessageBufferSize(webSocketProperties.getMaxBinaryMessageBufferSize());
+        container.setAsyncSendTimeout(webSocketProperties.getAsyncSendTimeoutMs());
+        return container;
+    }
+
+    /**
+     * Drops permessage-deflate when it is disabled, or when the client asked for thresholded
+     * application-level compression instead — compressing twice only costs CPU.
+     */
+    private class CompressionAwareHandshakeHandler extends DefaultHandshakeHandler {
+        @Override
+        protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                    List<WebSocketExtension> requested,
+                                                                    List<WebSocketExtension> supported) {
+            List<WebSocketExtension> filtered = super.filterRequestedExtensions(request, requested, supported);
+            String query = request.getURI().getQuery();
+            boolean appCompression = webSocketProperties.getCompression().isApplicationDeflate()
+                    && query != null && query.contains("compress=deflate-raw");
+            if (webSocketProperties.getCompression().isPermessageDeflate() && !appCompression) {
+                return filtered;
+            }
+            return filtered.stream().filter(ext -> !PERMESSAGE_DEFLATE.equals(ext.getName())).toList();
+        }
+    }
 }
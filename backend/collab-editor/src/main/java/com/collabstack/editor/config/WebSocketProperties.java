@@ -0,0 +1,50 @@
+package com.collabstack.editor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.websocket")
+@Data
+public class WebSocketProperties {
+
+    // Container-wide defaults (Tomcat); endpoints can tighten them per session
+    private int maxTextMessageBufferSize = 1024 * 1024;
+    private int maxBinaryMessageBufferSize = 1024 * 1024;
+    private long asyncSendTimeoutMs = 30_000;
+
+    private Compression compression = new Compression();
+
+    // endpoint name (e.g. "documents") -> limits
+    private Map<String, Endpoint> endpoints = new HashMap<>();
+
+    public Endpoint endpoint(String name) {
+        return endpoints.getOrDefault(name, new Endpoint());
+    }
+
+    @Data
+    public static class Compression {
+        // Negotiate RFC 7692 permessage-deflate when the client offers it (compresses every frame)
+        private boolean permessageDeflate = true;
+        // Let clients opt into thresholded compression with ?compress=deflate-raw
+        private boolean applicationDeflate = true;
+        // Only frames at least this large (UTF-8 bytes) are compressed in application mode
+        private int thresholdBytes = 32 * 1024;
+    }
+
+    @Data
+    public static class Endpoint {
+        // Largest inbound text message accepted from a client
+        private int textMessageSizeLimit = 64 * 1024;
+        // Outbound messages are split into frames of at most this many chars / bytes
+        private int fragmentSize = 64 * 1024;
+        // A client that cannot take a message within this time is disconnected
+        private int sendTimeLimitMs = 10_000;
+        // Max unsent bytes queued per client; must exceed the largest SYNC a client may get
+        private int sendBufferSizeLimit = 8 * 1024 * 1024;
+    }
+}
@@ -2,19 +2,24 @@ package com.collabstack.editor.controller;
 
 import com.collabstack.editor.dto.request.ChatRequest;
 import com.collabstack.editor.dto.response.ChatResponse;
+import com.collabstack.editor.dto.response.IndexingStatusResponse;
 import com.collabstack.editor.exception.ApiResponse;
 import com.collabstack.editor.security.UserPrincipal;
 import com.collabstack.editor.service.DocumentService;
-import com.collabstack.editor.service.EmbeddingService;
+import com.collabstack.editor.service.IndexingPriority;
+import com.collabstack.editor.service.IndexingScheduler;
 import com.collabstack.editor.service.RagChatService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.UUID;
 
@@ -26,7 +31,7 @@ import java.util.UUID;
 public class ChatController {
 
     private final RagChatService ragChatService;
-    private final EmbeddingService embeddingService;
+    private final IndexingScheduler indexingScheduler;
     private final DocumentService documentService;
 
     @PostMapping("/{documentId}/chat")
@@ -39,14 +44,36 @@ public class ChatController {
         return ResponseEntity.ok(ApiResponse.ok(response));
     }
 
+    @PostMapping(value = "/{documentId}/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Ask a question about a document, streaming sources then answer tokens as Server-Sent Events")
+    public Flux<ServerSentEvent<Object>> chatStream(
+            @PathVariable UUID documentId,
+            @AuthenticationPrincipal UserPrincipal principal,
+            @Valid @RequestBody ChatRequest request) {
+        // Closing the connection cancels the subscription, which aborts the model call
+        return ragChatService.chatStream(documentId, principal.getId(), request)
+                .map(e -> ServerSentEvent.builder(e.data()).event(e.event()).build());
+    }
+
     @PostMapping("/{documentId}/index")
     @Operation(summary = "Manually trigger document re-indexing into the vector store")
     public ResponseEntity<ApiResponse<Void>> indexDocument(
             @PathVariable UUID documentId,
             @AuthenticationPrincipal UserPrincipal principal) {
         // Verify access
-        String content = documentService.findById(documentId, principal.getId()).contentSnapshot();
-        embeddingService.indexDocument(documentId, content);
+        documentService.findById(documentId, principal.getId());
+        // A fork still sharing its source's content also shares its index
+        indexingScheduler.schedule(documentService.resolveIndexDocumentId(documentId), IndexingPriority.HIGH);
         return ResponseEntity.ok(ApiResponse.ok("Indexing started asynchronously", null));
     }
+
+    @GetMapping("/{documentId}/index/status")
+    @Operation(summary = "Re-indexing queue state for a document (IDLE, PENDING or RUNNING)")
+    public ResponseEntity<ApiResponse<IndexingStatusResponse>> indexStatus(
+            @PathVariable UUID documentId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        documentService.findById(documentId, principal.getId());
+        IndexingStatusResponse status = indexingScheduler.status(documentService.resolveIndexDocumentId(documentId));
+        return ResponseEntity.ok(ApiResponse.ok(status));
+    }
 }
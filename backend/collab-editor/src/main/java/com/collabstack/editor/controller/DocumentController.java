@@ -2,22 +2,32 @@ package com.collabstack.editor.controller;
 
 import com.collabstack.editor.dto.request.AddCollaboratorRequest;
 import com.collabstack.editor.dto.request.DocumentCreateRequest;
+import com.collabstack.editor.dto.request.ForkDocumentRequest;
 import com.collabstack.editor.dto.request.UpdateTitleRequest;
 import com.collabstack.editor.dto.response.CollaboratorResponse;
 import com.collabstack.editor.dto.response.DocumentResponse;
+import com.collabstack.editor.dto.response.DocumentSearchResponse;
 import com.collabstack.editor.exception.ApiResponse;
 import com.collabstack.editor.security.UserPrincipal;
 import com.collabstack.editor.service.DocumentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.UUID;
 
@@ -38,6 +48,17 @@ public class DocumentController {
         return ResponseEntity.ok(ApiResponse.ok(documents));
     }
 
+    @GetMapping("/search")
+    @Operation(summary = "Full-text search across the user's documents (ranked, keyset-paged)")
+    public ResponseEntity<ApiResponse<DocumentSearchResponse>> search(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
+        DocumentSearchResponse response = documentService.search(principal.getId(), q, limit, cursor);
+        return ResponseEntity.ok(ApiResponse.ok(response));
+    }
+
     @PostMapping
     @Operation(summary = "Create a new document")
     public ResponseEntity<ApiResponse<DocumentResponse>> create(
@@ -47,6 +68,22 @@ public class DocumentController {
         return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.ok("Document created", response));
     }
 
+    @PostMapping(value = "/import", consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.TEXT_MARKDOWN_VALUE})
+    @Operation(summary = "Create a document by streaming a plain-text or markdown body")
+    public ResponseEntity<ApiResponse<DocumentResponse>> importDocument(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @RequestParam(defaultValue = "Untitled import") String title,
+            HttpServletRequest request) throws IOException {
+        Charset charset = request.getCharacterEncoding() != null
+                ? Charset.forName(request.getCharacterEncoding())
+                : StandardCharsets.UTF_8;
+        String trimmedTitle = title.length() > 500 ? title.substring(0, 500) : title;
+        try (Reader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), charset))) {
+            DocumentResponse response = documentService.importDocument(principal.getId(), trimmedTitle, reader);
+            return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.ok("Document imported", response));
+        }
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get a document by ID")
     public ResponseEntity<ApiResponse<DocumentResponse>> findById(
@@ -56,6 +93,15 @@ public class DocumentController {
         return ResponseEntity.ok(ApiResponse.ok(response));
     }
 
+    @GetMapping("/{id}/summary")
+    @Operation(summary = "Get a document's metadata and content length, without the content")
+    public ResponseEntity<ApiResponse<DocumentResponse>> findSummaryById(
+            @PathVariable UUID id,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        DocumentResponse response = documentService.findSummaryById(id, principal.getId());
+        return ResponseEntity.ok(ApiResponse.ok(response));
+    }
+
     @PutMapping("/{id}/title")
     @Operation(summary = "Update document title (owner only)")
     public ResponseEntity<ApiResponse<DocumentResponse>> updateTitle(
@@ -75,6 +121,16 @@ public class DocumentController {
         return ResponseEntity.ok(ApiResponse.ok("Document deleted", null));
     }
 
+    @PostMapping("/{id}/fork")
+    @Operation(summary = "Fork a document (copy-on-write: shares content and index until either side is edited)")
+    public ResponseEntity<ApiResponse<DocumentResponse>> fork(
+            @PathVariable UUID id,
+            @AuthenticationPrincipal UserPrincipal principal,
+            @Valid @RequestBody(required = false) ForkDocumentRequest request) {
+        DocumentResponse response = documentService.fork(id, principal.getId(), request != null ? request.title() : null);
+        return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.ok("Document forked", response));
+    }
+
     @PostMapping("/{id}/collaborators")
     @Operation(summary = "Add a collaborator to a document (owner only)")
     public ResponseEntity<ApiResponse<CollaboratorResponse>> addCollaborator(
@@ -0,0 +1,34 @@
+package com.collabstack.editor.controller;
+
+import com.collabstack.editor.dto.request.SemanticSearchRequest;
+import com.collabstack.editor.dto.response.SemanticSearchResponse;
+import com.collabstack.editor.exception.ApiResponse;
+import com.collabstack.editor.security.UserPrincipal;
+import com.collabstack.editor.service.SemanticSearchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+@Tag(name = "Search", description = "Search across all documents the user can access")
+@SecurityRequirement(name = "bearerAuth")
+public class SearchController {
+
+    private final SemanticSearchService semanticSearchService;
+
+    @PostMapping("/semantic")
+    @Operation(summary = "Semantic (vector) search over the chunks of every accessible document, ranked and paged")
+    public ResponseEntity<ApiResponse<SemanticSearchResponse>> semantic(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @Valid @RequestBody SemanticSearchRequest request) {
+        SemanticSearchResponse response = semanticSearchService.search(principal.getId(), request);
+        return ResponseEntity.ok(ApiResponse.ok(response));
+    }
+}
@@ -0,0 +1,7 @@
+package com.collabstack.editor.dto.request;
+
+import jakarta.validation.constraints.Size;
+
+public record ForkDocumentRequest(
+        @Size(max = 500) String title
+) {}
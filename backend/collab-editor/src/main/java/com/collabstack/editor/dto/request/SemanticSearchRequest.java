@@ -0,0 +1,10 @@
+package com.collabstack.editor.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+public record SemanticSearchRequest(
+        @NotBlank @Size(max = 2000) String query,
+        Integer limit,
+        String cursor
+) {}
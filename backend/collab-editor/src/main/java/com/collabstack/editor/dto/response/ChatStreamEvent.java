@@ -0,0 +1,35 @@
+package com.collabstack.editor.dto.response;
+
+import java.util.List;
+
+/**
+ * One Server-Sent Event of a streamed chat answer: {@code sources} first, then {@code token}s,
+ * then {@code done} — or a single {@code error} / {@code answer} when there is nothing to stream.
+ * Text is sent as {@link Text} JSON, so whitespace at either end of a token survives SSE framing.
+ */
+public record ChatStreamEvent(
+        String event,
+        Object data
+) {
+    public record Text(String text) {}
+
+    public static ChatStreamEvent sources(List<String> snippets) {
+        return new ChatStreamEvent("sources", snippets);
+    }
+
+    public static ChatStreamEvent token(String text) {
+        return new ChatStreamEvent("token", new Text(text));
+    }
+
+    public static ChatStreamEvent answer(String text) {
+        return new ChatStreamEvent("answer", new Text(text));
+    }
+
+    public static ChatStreamEvent error(String message) {
+        return new ChatStreamEvent("error", new Text(message));
+    }
+
+    public static ChatStreamEvent done() {
+        return new ChatStreamEvent("done", "");
+    }
+}
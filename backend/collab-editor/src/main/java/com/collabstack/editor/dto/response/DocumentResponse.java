@@ -7,9 +7,12 @@ public record DocumentResponse(
         UUID id,
         String title,
         String contentSnapshot,
+        // Length of the content in chars; set even where contentSnapshot is left out
+        Long contentLength,
         Long currentRevision,
         String ownerUsername,
         int collaboratorCount,
+        UUID forkedFromId,
         Instant createdAt,
         Instant updatedAt
 ) {}
@@ -0,0 +1,13 @@
+package com.collabstack.editor.dto.response;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record DocumentSearchHit(
+        UUID id,
+        String title,
+        String ownerUsername,
+        String snippet,
+        double rank,
+        Instant updatedAt
+) {}
@@ -0,0 +1,8 @@
+package com.collabstack.editor.dto.response;
+
+import java.util.List;
+
+public record DocumentSearchResponse(
+        List<DocumentSearchHit> hits,
+        String nextCursor
+) {}
@@ -0,0 +1,12 @@
+package com.collabstack.editor.dto.response;
+
+import com.collabstack.editor.service.IndexingPriority;
+
+import java.time.Instant;
+
+public record IndexingStatusResponse(
+        String state,
+        IndexingPriority priority,
+        Instant dueAt,
+        int coalescedRequests
+) {}
@@ -0,0 +1,12 @@
+package com.collabstack.editor.dto.response;
+
+import java.util.UUID;
+
+public record SemanticSearchHit(
+        UUID documentId,
+        String documentTitle,
+        UUID chunkId,
+        Integer chunkIndex,
+        String content,
+        double score
+) {}
@@ -0,0 +1,8 @@
+package com.collabstack.editor.dto.response;
+
+import java.util.List;
+
+public record SemanticSearchResponse(
+        List<SemanticSearchHit> hits,
+        String nextCursor
+) {}
@@ -0,0 +1,9 @@
+package com.collabstack.editor.dto.websocket;
+
+public record ShiftMessage(
+        String type,        // always "SHIFT"
+        int position,       // where the off-screen edit happened
+        int delta,          // chars inserted (+) or removed (-)
+        int totalLength,    // document length after the edit
+        long revision
+) {}
@@ -0,0 +1,8 @@
+package com.collabstack.editor.dto.websocket;
+
+public record ViewportMessage(
+        String type,        // always "VIEWPORT"
+        ViewportUnit unit,  // CHARS or LINES (defaults to CHARS)
+        int start,          // first char / line of the window
+        int length          // window size in the same unit
+) {}
@@ -0,0 +1,6 @@
+package com.collabstack.editor.dto.websocket;
+
+public enum ViewportUnit {
+    CHARS,
+    LINES
+}
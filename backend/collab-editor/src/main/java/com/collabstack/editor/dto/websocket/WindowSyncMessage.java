@@ -0,0 +1,10 @@
+package com.collabstack.editor.dto.websocket;
+
+public record WindowSyncMessage(
+        String type,        // always "SYNC_WINDOW"
+        String content,     // only the subscribed window
+        int windowStart,    // char offset of the window in the full document
+        int windowLength,   // char length of the window
+        int totalLength,    // char length of the full document
+        long revision
+) {}
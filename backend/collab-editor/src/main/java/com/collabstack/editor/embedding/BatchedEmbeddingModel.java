@@ -0,0 +1,46 @@
+package com.collabstack.editor.embedding;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * EmbeddingModel view of an {@link EmbeddingBatcher}: every call is split into texts that
+ * may share provider requests with other callers.
+ */
+public class BatchedEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingBatcher batcher;
+    private final EmbeddingModel delegate;
+
+    public BatchedEmbeddingModel(EmbeddingBatcher batcher, EmbeddingModel delegate) {
+        this.batcher = batcher;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<float[]> vectors = batcher.embed(request.getInstructions(), request.getOptions());
+        List<Embedding> embeddings = new ArrayList<>(vectors.size());
+        for (int i = 0; i < vectors.size(); i++) {
+            embeddings.add(new Embedding(vectors.get(i), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return batcher.embed(List.of(document.getText()), EmbeddingOptionsBuilder.builder().build()).get(0);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
@@ -0,0 +1,181 @@
+package com.collabstack.editor.embedding;
+
+import com.collabstack.editor.repository.EmbeddingCacheRepository;
+import com.collabstack.editor.util.Hashes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EmbeddingModel decorator backed by the embedding_cache table. Texts already embedded with
+ * the same model — by any document — are served from the cache; only misses reach the delegate,
+ * in one call. Size is bounded by LRU eviction on last_used_at, checked every
+ * {@code evictionCheckInterval} inserts.
+ * <p>
+ * Lookups run on the caller's connection. Inserts, touches and eviction are handed to a single
+ * writer thread, so parallel indexing runs share one pooled connection for them instead of taking
+ * a second one each; when {@code maxPendingWrites} writes are already queued, new ones are dropped
+ * (a later miss recomputes them). Keys include the model name and its {@link #dimensions()}.
+ * <p>
+ * Metrics: embedding.cache.lookups{result=hit|miss}, embedding.cache.calls.saved (model calls
+ * avoided entirely), embedding.cache.evictions.
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCacheRepository cache;
+    private final String modelName;
+    private final long maxEntries;
+    private final int evictionCheckInterval;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter callsSaved;
+    private final Counter evictions;
+    private final Counter droppedWrites;
+    private final AtomicLong insertsSinceEviction = new AtomicLong();
+    private final ThreadPoolExecutor writer;
+    // model name and dimensions; resolved on first use, since dimensions() may call the provider
+    private volatile String modelKey;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingCacheRepository cache, String modelName,
+                                 long maxEntries, int evictionCheckInterval, int maxPendingWrites,
+                                 MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.modelName = modelName;
+        this.maxEntries = maxEntries;
+        this.evictionCheckInterval = evictionCheckInterval;
+        this.hits = Counter.builder("embedding.cache.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("embedding.cache.lookups").tag("result", "miss").register(meterRegistry);
+        this.callsSaved = Counter.builder("embedding.cache.calls.saved").register(meterRegistry);
+        this.evictions = Counter.builder("embedding.cache.evictions").register(meterRegistry);
+        this.droppedWrites = Counter.builder("embedding.cache.writes.dropped").register(meterRegistry);
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxPendingWrites), r -> {
+                    Thread thread = new Thread(r, "embedding-cache-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (r, executor) -> droppedWrites.increment());
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        List<String> keys = texts.stream().map(this::cacheKey).toList();
+
+        Map<String, float[]> cached;
+        try {
+            cached = cache.findAll(keys);
+        } catch (Exception e) {
+            log.warn("Embedding cache lookup failed, calling model directly: {}", e.getMessage());
+            return delegate.call(request);
+        }
+
+        // Distinct missing texts, in request order
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (!cached.containsKey(keys.get(i))) {
+                missing.putIfAbsent(keys.get(i), texts.get(i));
+            }
+        }
+        long missCount = keys.stream().filter(k -> !cached.containsKey(k)).count();
+        hits.increment(texts.size() - missCount);
+        misses.increment(missCount);
+
+        Map<String, float[]> computed = new HashMap<>();
+        if (missing.isEmpty()) {
+            callsSaved.increment();
+        } else {
+            List<String> missingKeys = new ArrayList<>(missing.keySet());
+            EmbeddingResponse response = delegate.call(
+                    new EmbeddingRequest(new ArrayList<>(missing.values()), request.getOptions()));
+            List<Embedding> results = response.getResults();
+            for (int i = 0; i < results.size(); i++) {
+                Embedding result = results.get(i);
+                int index = result.getIndex() != null ? result.getIndex() : i;
+                computed.put(missingKeys.get(index), result.getOutput());
+            }
+            store(computed);
+        }
+
+        if (!cached.isEmpty()) {
+            List<String> touched = new ArrayList<>(cached.keySet());
+            writer.execute(() -> {
+                try {
+                    cache.touch(touched);
+                } catch (Exception e) {
+                    log.debug("Embedding cache touch failed: {}", e.getMessage());
+                }
+            });
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            float[] vector = cached.containsKey(keys.get(i)) ? cached.get(keys.get(i)) : computed.get(keys.get(i));
+            embeddings.add(new Embedding(vector, i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return call(new EmbeddingRequest(List.of(document.getText()), EmbeddingOptionsBuilder.builder().build()))
+                .getResult().getOutput();
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private void store(Map<String, float[]> computed) {
+        writer.execute(() -> save(computed));
+    }
+
+    private void save(Map<String, float[]> computed) {
+        try {
+            cache.saveAll(computed);
+            if (insertsSinceEviction.addAndGet(computed.size()) >= evictionCheckInterval) {
+                insertsSinceEviction.set(0);
+                int evicted = cache.evictBeyond(maxEntries);
+                if (evicted > 0) {
+                    evictions.increment(evicted);
+                    log.info("Evicted {} least recently used embedding cache entries", evicted);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to store {} embeddings in cache: {}", computed.size(), e.getMessage());
+        }
+    }
+
+    private String cacheKey(String text) {
+        return Hashes.sha256Hex(modelKey() + '\u0000' + text);
+    }
+
+    private String modelKey() {
+        String key = modelKey;
+        if (key == null) {
+            key = modelName + ':' + dimensions();
+            modelKey = key;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,208 @@
+package com.collabstack.editor.embedding;
+
+import com.collabstack.editor.exception.ProviderUnavailableException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gathers texts from concurrent callers into provider-sized embedding requests.
+ * <p>
+ * Callers {@link #embed} any number of texts and block until theirs are done. A dispatcher thread
+ * collects queued texts until {@code maxBatchSize} is reached or {@code maxWait} has passed since
+ * the first one, groups them by model/dimensions, and sends each batch to the delegate with at most
+ * {@code maxConcurrency} requests in flight. Results are routed back to each caller by position.
+ * If a batch fails, every caller with a text in it gets the exception. A caller waits at most
+ * {@code resultTimeout} for its results; texts of callers that gave up are not sent.
+ */
+@Slf4j
+public class EmbeddingBatcher implements AutoCloseable {
+
+    private record Item(String text, EmbeddingOptions options, CompletableFuture<float[]> result) {}
+
+    private record OptionsKey(String model, Integer dimensions) {
+        static OptionsKey of(EmbeddingOptions options) {
+            return options == null ? new OptionsKey(null, null) : new OptionsKey(options.getModel(), options.getDimensions());
+        }
+    }
+
+    private final EmbeddingModel delegate;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Duration resultTimeout;
+    private final Semaphore inFlight;
+    private final BlockingQueue<Item> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService callers;
+    private final Thread dispatcher;
+    private final DistributionSummary batchSizes;
+    private volatile boolean closed;
+
+    public EmbeddingBatcher(EmbeddingModel delegate, int maxBatchSize, Duration maxWait, int maxConcurrency,
+                            Duration resultTimeout, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.resultTimeout = resultTimeout;
+        this.inFlight = new Semaphore(maxConcurrency);
+        AtomicInteger callerCount = new AtomicInteger();
+        this.callers = Executors.newFixedThreadPool(maxConcurrency, r -> {
+            Thread thread = new Thread(r, "embedding-batch-" + callerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchSizes = DistributionSummary.builder("embedding.batch.size").register(meterRegistry);
+        this.dispatcher = new Thread(this::dispatchLoop, "embedding-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Embeds {@code texts}, sharing provider requests with other concurrent callers.
+     * Blocks until all results are in, or fails with {@link ProviderUnavailableException} after
+     * {@code resultTimeout}; the returned list is in input order.
+     */
+    public List<float[]> embed(List<String> texts, EmbeddingOptions options) {
+        if (closed) {
+            throw new IllegalStateException("Embedding batcher is closed");
+        }
+        List<CompletableFuture<float[]>> results = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            CompletableFuture<float[]> result = new CompletableFuture<>();
+            results.add(result);
+            queue.add(new Item(text, options, result));
+        }
+        long deadline = System.nanoTime() + resultTimeout.toNanos();
+        List<float[]> vectors = new ArrayList<>(results.size());
+        try {
+            for (CompletableFuture<float[]> result : results) {
+                vectors.add(result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            }
+            return vectors;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ProviderUnavailableException("Embedding batch failed", e.getCause());
+        } catch (TimeoutException e) {
+            results.forEach(result -> result.cancel(false));
+            throw new ProviderUnavailableException("Embeddings not returned within " + resultTimeout.toMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            results.forEach(result -> result.cancel(false));
+            throw new ProviderUnavailableException("Interrupted while waiting for embeddings");
+        }
+    }
+
+    private void dispatchLoop() {
+        while (!closed) {
+            try {
+                List<Item> collected = collect();
+                Map<OptionsKey, List<Item>> groups = new LinkedHashMap<>();
+                for (Item item : collected) {
+                    // Its caller already gave up
+                    if (item.result().isDone()) {
+                        continue;
+                    }
+                    groups.computeIfAbsent(OptionsKey.of(item.options()), k -> new ArrayList<>()).add(item);
+                }
+                for (List<Item> group : groups.values()) {
+                    for (int from = 0; from < group.size(); from += maxBatchSize) {
+                        List<Item> batch = group.subList(from, Math.min(from + maxBatchSize, group.size()));
+                        inFlight.acquire();
+                        callers.execute(() -> {
+                            try {
+                                send(batch);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Embedding batch dispatch failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Blocks for the first item, then lingers up to maxWait for more, stopping early at a full batch.
+     */
+    private List<Item> collect() throws InterruptedException {
+        List<Item> items = new ArrayList<>();
+        items.add(queue.take());
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (items.size() < maxBatchSize) {
+            // Anything already queued joins without waiting
+            if (queue.drainTo(items, maxBatchSize - items.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Item next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            items.add(next);
+        }
+        return items;
+    }
+
+    private void send(List<Item> batch) {
+        try {
+            List<String> texts = batch.stream().map(Item::text).toList();
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(texts, batch.get(0).options()));
+            List<Embedding> results = response.getResults();
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException("Embedding model returned " + results.size()
+                        + " vectors for " + batch.size() + " inputs");
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Embedding result = results.get(i);
+                int index = Objects.requireNonNullElse(result.getIndex(), i);
+                batch.get(index).result().complete(result.getOutput());
+            }
+            batchSizes.record(batch.size());
+        } catch (Exception e) {
+            batch.forEach(item -> item.result().completeExceptionally(e));
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        callers.shutdown();
+        IllegalStateException shutdown = new IllegalStateException("Embedding batcher is closed");
+        Item item;
+        while ((item = queue.poll()) != null) {
+            item.result().completeExceptionally(shutdown);
+        }
+    }
+}
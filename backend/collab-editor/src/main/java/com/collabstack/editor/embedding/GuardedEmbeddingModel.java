@@ -0,0 +1,37 @@
+package com.collabstack.editor.embedding;
+
+import com.collabstack.editor.resilience.Bulkhead;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * Sends every provider call through a {@link Bulkhead}: bounded concurrency, a deadline per
+ * request and fail-fast while the provider's circuit is open.
+ */
+public class GuardedEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final Bulkhead bulkhead;
+
+    public GuardedEmbeddingModel(EmbeddingModel delegate, Bulkhead bulkhead) {
+        this.delegate = delegate;
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return bulkhead.call(() -> delegate.call(request));
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return bulkhead.call(() -> delegate.embed(document));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
@@ -2,6 +2,7 @@ package com.collabstack.editor.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Formula;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -34,6 +35,19 @@ public class Document {
     @Column(name = "content_snapshot", columnDefinition = "TEXT")
     private String contentSnapshot;
 
+    // Set while this document is a fork still sharing another document's snapshot and index
+    @Column(name = "content_source_id")
+    private UUID contentSourceId;
+
+    @Column(name = "forked_from_id")
+    private UUID forkedFromId;
+
+    // Read-only view of the shared snapshot; null unless content_source_id is set
+    @Formula("(SELECT s.content_snapshot FROM documents s WHERE s.id = content_source_id)")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private String sharedContent;
+
     @Column(name = "current_revision", nullable = false)
     @Builder.Default
     private Long currentRevision = 0L;
@@ -51,4 +65,18 @@ public class Document {
     @LastModifiedDate
     @Column(name = "updated_at")
     private Instant updatedAt;
+
+    /**
+     * The document's current content, following the fork pointer if it still shares one.
+     */
+    public String resolveContent() {
+        return contentSourceId != null ? sharedContent : contentSnapshot;
+    }
+
+    /**
+     * Id under which this document's chunks and vectors are stored.
+     */
+    public UUID resolveIndexDocumentId() {
+        return contentSourceId != null ? contentSourceId : id;
+    }
 }
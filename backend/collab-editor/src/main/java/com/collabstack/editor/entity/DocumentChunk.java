@@ -31,6 +31,14 @@ public class DocumentChunk {
     @Column(name = "content", columnDefinition = "TEXT", nullable = false)
     private String content;
 
+    // SHA-256 (hex) of content; unchanged chunks are kept across re-indexing
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    // Leading chars repeating the end of the previous chunk; null if unknown
+    @Column(name = "overlap_chars")
+    private Integer overlapChars;
+
     @CreatedDate
     @Column(name = "created_at", updatable = false)
     private Instant createdAt;
@@ -0,0 +1,63 @@
+package com.collabstack.editor.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "reindex_jobs")
+@EntityListeners(AuditingEntityListener.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReindexJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ReindexJobStatus status;
+
+    // Re-embed every chunk, not only changed ones (e.g. after switching embedding model)
+    @Column(nullable = false)
+    private boolean rebuild;
+
+    @Column(nullable = false)
+    private int parallelism;
+
+    // 0 = unlimited
+    @Column(name = "max_per_second", nullable = false)
+    private double maxPerSecond;
+
+    // Checkpoint: every index document with id <= this one has been processed
+    @Column(name = "last_document_id")
+    private UUID lastDocumentId;
+
+    @Column(name = "total_documents", nullable = false)
+    private long totalDocuments;
+
+    @Column(nullable = false)
+    private long processed;
+
+    @Column(nullable = false)
+    private long failed;
+
+    @CreatedDate
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+}
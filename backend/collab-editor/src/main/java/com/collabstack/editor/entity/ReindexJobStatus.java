@@ -0,0 +1,8 @@
+package com.collabstack.editor.entity;
+
+public enum ReindexJobStatus {
+    RUNNING,
+    PAUSED,
+    COMPLETED,
+    CANCELLED
+}
@@ -0,0 +1,6 @@
+package com.collabstack.editor.entity;
+
+public enum UserRole {
+    USER,
+    ADMIN
+}
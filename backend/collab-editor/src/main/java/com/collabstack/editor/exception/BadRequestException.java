@@ -0,0 +1,5 @@
+package com.collabstack.editor.exception;
+
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) { super(message); }
+}
@@ -0,0 +1,6 @@
+package com.collabstack.editor.exception;
+
+public class ProviderUnavailableException extends RuntimeException {
+    public ProviderUnavailableException(String message) { super(message); }
+    public ProviderUnavailableException(String message, Throwable cause) { super(message, cause); }
+}
@@ -4,8 +4,10 @@ import com.collabstack.editor.dto.response.CollaboratorResponse;
 import com.collabstack.editor.dto.response.DocumentResponse;
 import com.collabstack.editor.entity.Document;
 import com.collabstack.editor.entity.DocumentCollaborator;
+import com.collabstack.editor.repository.DocumentRepository;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
+import org.mapstruct.Named;
 
 import java.util.List;
 
@@ -14,10 +16,31 @@ public interface DocumentMapper {
 
     @Mapping(source = "owner.username", target = "ownerUsername")
     @Mapping(expression = "java(document.getCollaborators().size())", target = "collaboratorCount")
+    @Mapping(expression = "java(document.resolveContent())", target = "contentSnapshot")
+    @Mapping(expression = "java(document.resolveContent() != null ? (long) document.resolveContent().length() : 0L)",
+            target = "contentLength")
     DocumentResponse toResponse(Document document);
 
     List<DocumentResponse> toResponseList(List<Document> documents);
 
+    /**
+     * Same as {@link #toResponse} without the content, for documents whose snapshot is
+     * too large to echo back or was written outside the persistence context.
+     */
+    @Mapping(source = "owner.username", target = "ownerUsername")
+    @Mapping(expression = "java(document.getCollaborators().size())", target = "collaboratorCount")
+    @Mapping(target = "contentSnapshot", ignore = true)
+    @Mapping(target = "contentLength", ignore = true)
+    @Named("summary")
+    DocumentResponse toSummaryResponse(Document document);
+
+    /**
+     * Metadata and content length only, so a client can pick how to open a large document
+     * before downloading it.
+     */
+    @Mapping(target = "contentSnapshot", ignore = true)
+    DocumentResponse toSummaryResponse(DocumentRepository.DocumentSummary summary, Long contentLength);
+
     @Mapping(source = "user.id", target = "userId")
     @Mapping(source = "user.username", target = "username")
     @Mapping(source = "user.email", target = "email")
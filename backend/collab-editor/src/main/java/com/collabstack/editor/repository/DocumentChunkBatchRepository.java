@@ -0,0 +1,73 @@
+package com.collabstack.editor.repository;
+
+import com.collabstack.editor.entity.DocumentChunk;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Set-based writes to document_chunks. Ids are assigned client-side by the caller, so no
+ * entity round trip is needed before the rows are referenced (e.g. as vector_store ids).
+ * With reWriteBatchedInserts the driver turns each batch into multi-row INSERTs.
+ * Runs in the caller's transaction; rows are not added to the persistence context.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DocumentChunkBatchRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<DocumentChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO document_chunks (id, document_id, chunk_index, content, content_hash, overlap_chars) " +
+                "VALUES (?, ?, ?, ?, ?, ?)",
+                chunks, BATCH_SIZE, (ps, chunk) -> {
+                    ps.setObject(1, chunk.getId());
+                    ps.setObject(2, chunk.getDocumentId());
+                    ps.setInt(3, chunk.getChunkIndex());
+                    ps.setString(4, chunk.getContent());
+                    ps.setString(5, chunk.getContentHash());
+                    ps.setObject(6, chunk.getOverlapChars(), Types.INTEGER);
+                });
+    }
+
+    /**
+     * Renumbers kept chunks, also setting their overlap with the (possibly new) previous chunk.
+     */
+    public void updateChunkIndexes(List<DocumentChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE document_chunks SET chunk_index = ?, overlap_chars = ? WHERE id = ?",
+                chunks, BATCH_SIZE, (ps, chunk) -> {
+                    ps.setInt(1, chunk.getChunkIndex());
+                    ps.setObject(2, chunk.getOverlapChars(), Types.INTEGER);
+                    ps.setObject(3, chunk.getId());
+                });
+    }
+
+    /**
+     * Keeps vector metadata in step when unchanged chunks move to a new index.
+     */
+    public void updateVectorChunkIndexes(List<DocumentChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE vector_store SET metadata = jsonb_set(metadata::jsonb, '{chunkIndex}', to_jsonb(?))::json " +
+                "WHERE id = ?",
+                chunks, BATCH_SIZE, (ps, chunk) -> {
+                    ps.setInt(1, chunk.getChunkIndex());
+                    ps.setObject(2, chunk.getId());
+                });
+    }
+}
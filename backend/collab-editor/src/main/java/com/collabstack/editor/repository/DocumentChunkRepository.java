@@ -1,12 +1,92 @@
 package com.collabstack.editor.repository;
 
 import com.collabstack.editor.entity.DocumentChunk;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, UUID> {
+
+    interface ChunkRef {
+        UUID getId();
+        int getChunkIndex();
+        String getContentHash();
+        Integer getOverlapChars();
+    }
+
+    interface ChunkOverlap {
+        UUID getId();
+        Integer getOverlapChars();
+    }
+
     List<DocumentChunk> findAllByDocumentIdOrderByChunkIndexAsc(UUID documentId);
-    void deleteAllByDocumentId(UUID documentId);
+    Slice<DocumentChunk> findByDocumentIdOrderByChunkIndexAsc(UUID documentId, Pageable pageable);
+
+    @Query("SELECT c.id AS id, c.chunkIndex AS chunkIndex, c.contentHash AS contentHash, " +
+           "c.overlapChars AS overlapChars FROM DocumentChunk c WHERE c.documentId = :documentId")
+    List<ChunkRef> findRefsByDocumentId(@Param("documentId") UUID documentId);
+
+    @Query("SELECT c.id AS id, c.overlapChars AS overlapChars FROM DocumentChunk c WHERE c.id IN :ids")
+    List<ChunkOverlap> findOverlapsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Marks the overlap of a chunk and of its successor unknown, after the chunk was replaced on its own.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE DocumentChunk c SET c.overlapChars = NULL " +
+           "WHERE c.documentId = :documentId AND c.chunkIndex IN (:chunkIndex, :chunkIndex + 1)")
+    int clearOverlaps(@Param("documentId") UUID documentId, @Param("chunkIndex") int chunkIndex);
+
+    Optional<DocumentChunk> findByDocumentIdAndChunkIndex(UUID documentId, int chunkIndex);
+
+    @Query("SELECT c.id FROM DocumentChunk c WHERE c.documentId = :documentId")
+    List<UUID> findIdsByDocumentId(@Param("documentId") UUID documentId);
+
+    /**
+     * Single-statement delete (the derived deleteAllBy... loads and removes rows one by one).
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM DocumentChunk c WHERE c.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") UUID documentId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM DocumentChunk c WHERE c.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Copies one document's chunk rows to another under fresh ids.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO document_chunks (id, document_id, chunk_index, content, content_hash, overlap_chars) " +
+                   "SELECT uuid_generate_v4(), :targetId, chunk_index, content, content_hash, overlap_chars " +
+                   "FROM document_chunks WHERE document_id = :sourceId", nativeQuery = true)
+    int copyChunks(@Param("sourceId") UUID sourceId, @Param("targetId") UUID targetId);
+
+    /**
+     * Copies chunk rows together with their vector_store entries, re-keyed to the new chunk ids
+     * and re-tagged with the target documentId. Embeddings are copied as-is, never recomputed;
+     * like every vector row, the copies carry no text of their own.
+     */
+    @Modifying
+    @Query(value = "WITH src AS (" +
+                   "  SELECT id AS old_id, uuid_generate_v4() AS new_id, chunk_index, content, content_hash, " +
+                   "         overlap_chars " +
+                   "  FROM document_chunks WHERE document_id = :sourceId), " +
+                   "chunks AS (" +
+                   "  INSERT INTO document_chunks (id, document_id, chunk_index, content, content_hash, overlap_chars) " +
+                   "  SELECT new_id, :targetId, chunk_index, content, content_hash, overlap_chars FROM src) " +
+                   "INSERT INTO vector_store (id, content, metadata, embedding) " +
+                   "SELECT src.new_id, NULL, " +
+                   "       jsonb_set(v.metadata::jsonb, '{documentId}', to_jsonb(CAST(:targetId AS text)))::json, " +
+                   "       v.embedding " +
+                   "FROM src JOIN vector_store v ON v.id = src.old_id", nativeQuery = true)
+    int copyChunksWithVectors(@Param("sourceId") UUID sourceId, @Param("targetId") UUID targetId);
 }
@@ -0,0 +1,49 @@
+package com.collabstack.editor.repository;
+
+import com.collabstack.editor.entity.DocumentChunk;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Full-text search over one document's chunks (document_chunks.search_vector).
+ * The question's terms are OR-ed, so chunks matching more (and rarer, denser) terms rank first
+ * instead of requiring every word of a natural-language question to occur.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DocumentChunkSearchRepository {
+
+    private static final String SEARCH_SQL = """
+            WITH q AS (SELECT CAST(replace(CAST(plainto_tsquery('english', :q) AS text), ' & ', ' | ') AS tsquery) AS query)
+            SELECT c.id, c.document_id, c.chunk_index, c.content
+            FROM document_chunks c
+            CROSS JOIN q
+            WHERE c.document_id = :documentId
+              AND c.search_vector @@ q.query
+            ORDER BY ts_rank_cd(c.search_vector, q.query) DESC, c.chunk_index
+            LIMIT :limit
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Best-matching chunks first; detached entities (not managed by JPA).
+     */
+    public List<DocumentChunk> search(UUID documentId, String query, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("q", query)
+                .addValue("documentId", documentId)
+                .addValue("limit", limit);
+        return jdbcTemplate.query(SEARCH_SQL, params, (rs, rowNum) -> DocumentChunk.builder()
+                .id(rs.getObject("id", UUID.class))
+                .documentId(rs.getObject("document_id", UUID.class))
+                .chunkIndex(rs.getInt("chunk_index"))
+                .content(rs.getString("content"))
+                .build());
+    }
+}
@@ -2,10 +2,14 @@ package com.collabstack.editor.repository;
 
 import com.collabstack.editor.entity.Document;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface DocumentRepository extends JpaRepository<Document, UUID> {
@@ -17,4 +21,111 @@ public interface DocumentRepository extends JpaRepository<Document, UUID> {
             @Param("collaboratorUserId") UUID collaboratorUserId);
 
     boolean existsByIdAndOwnerId(UUID id, UUID ownerId);
+
+    /**
+     * Recomputes search_vector from the title and the (possibly shared) snapshot.
+     * Content beyond 500k chars is not indexed, keeping the vector under the 1MB tsvector limit.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE documents d SET search_vector = " +
+                   "setweight(to_tsvector('english', coalesce(d.title, '')), 'A') || " +
+                   "setweight(to_tsvector('english', left(coalesce(d.content_snapshot, " +
+                   "(SELECT s.content_snapshot FROM documents s WHERE s.id = d.content_source_id), ''), 500000)), 'B') " +
+                   "WHERE d.id = :id", nativeQuery = true)
+    int refreshSearchVector(@Param("id") UUID id);
+
+    interface AccessibleDocument {
+        UUID getId();
+        UUID getIndexDocumentId();
+        String getTitle();
+    }
+
+    /**
+     * Documents the user owns or collaborates on, with the document holding each one's chunks
+     * (a fork's source until the fork is written to).
+     */
+    @Query("SELECT d.id AS id, COALESCE(d.contentSourceId, d.id) AS indexDocumentId, d.title AS title " +
+           "FROM Document d WHERE d.owner.id = :userId " +
+           "OR EXISTS (SELECT 1 FROM DocumentCollaborator c WHERE c.document = d AND c.user.id = :userId)")
+    List<AccessibleDocument> findAccessible(@Param("userId") UUID userId);
+
+    interface DocumentSummary {
+        UUID getId();
+        String getTitle();
+        UUID getOwnerId();
+        String getOwnerUsername();
+        Long getCurrentRevision();
+        int getCollaboratorCount();
+        UUID getForkedFromId();
+        Instant getCreatedAt();
+        Instant getUpdatedAt();
+    }
+
+    /**
+     * The document's metadata without loading its content.
+     */
+    @Query("SELECT d.id AS id, d.title AS title, o.id AS ownerId, o.username AS ownerUsername, " +
+           "d.currentRevision AS currentRevision, size(d.collaborators) AS collaboratorCount, " +
+           "d.forkedFromId AS forkedFromId, d.createdAt AS createdAt, d.updatedAt AS updatedAt " +
+           "FROM Document d JOIN d.owner o WHERE d.id = :id")
+    Optional<DocumentSummary> findSummaryById(@Param("id") UUID id);
+
+    /**
+     * Length in chars of the (possibly shared) snapshot, computed in the database.
+     */
+    @Query(value = "SELECT char_length(coalesce(d.content_snapshot, s.content_snapshot, '')) " +
+                   "FROM documents d LEFT JOIN documents s ON s.id = d.content_source_id WHERE d.id = :id",
+           nativeQuery = true)
+    Optional<Long> findContentLength(@Param("id") UUID id);
+
+    interface ForkLink {
+        UUID getId();
+        UUID getContentSourceId();
+    }
+
+    @Query("SELECT d.id AS id, d.contentSourceId AS contentSourceId FROM Document d " +
+           "WHERE d.id IN :ids AND d.contentSourceId IS NOT NULL")
+    List<ForkLink> findSharingForks(@Param("ids") Collection<UUID> ids);
+
+    @Query(value = "SELECT id FROM documents WHERE content_source_id = :sourceId", nativeQuery = true)
+    List<UUID> findForkIdsSharing(@Param("sourceId") UUID sourceId);
+
+    /**
+     * Row-locks the document until the transaction ends; a fork of it cannot be inserted meanwhile
+     * (its foreign key check waits on the lock).
+     */
+    @Query(value = "SELECT id FROM documents WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<UUID> lockById(@Param("id") UUID id);
+
+    /**
+     * Gives every fork still sharing this document's snapshot its own copy of it.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE documents f SET content_snapshot = s.content_snapshot, content_source_id = NULL " +
+                   "FROM documents s WHERE s.id = :sourceId AND f.content_source_id = s.id", nativeQuery = true)
+    int materializeForks(@Param("sourceId") UUID sourceId);
+
+    /**
+     * Keyset pages, in id order, of the documents that own their chunks (forks sharing a source are skipped).
+     */
+    @Query(value = "SELECT id FROM documents WHERE content_source_id IS NULL ORDER BY id LIMIT :limit",
+           nativeQuery = true)
+    List<UUID> findIndexDocumentIds(@Param("limit") int limit);
+
+    @Query(value = "SELECT id FROM documents WHERE content_source_id IS NULL AND id > :after ORDER BY id LIMIT :limit",
+           nativeQuery = true)
+    List<UUID> findIndexDocumentIdsAfter(@Param("after") UUID after, @Param("limit") int limit);
+
+    @Query(value = "SELECT count(*) FROM documents WHERE content_source_id IS NULL", nativeQuery = true)
+    long countIndexDocuments();
+
+    @Query(value = "SELECT COALESCE(content_source_id, id) FROM documents WHERE id = :id", nativeQuery = true)
+    Optional<UUID> findIndexDocumentId(@Param("id") UUID id);
+
+    @Query(value = "SELECT index_version FROM documents WHERE id = :id", nativeQuery = true)
+    Optional<Long> findIndexVersion(@Param("id") UUID id);
+
+    @Modifying
+    @Query(value = "UPDATE documents SET index_version = index_version + 1 WHERE id = :id", nativeQuery = true)
+    int bumpIndexVersion(@Param("id") UUID id);
 }
@@ -0,0 +1,82 @@
+package com.collabstack.editor.repository;
+
+import com.collabstack.editor.dto.response.DocumentSearchHit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ranked full-text search over documents.search_vector and titles (pg_trgm).
+ * Access control is part of the query, and pages are keyed on (rank, id) so deep pages
+ * cost the same as the first one. Snippets are only built for the rows of the page.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DocumentSearchRepository {
+
+    // Upper bound of text handed to ts_headline per hit
+    private static final int HEADLINE_MAX_CHARS = 200_000;
+
+    private static final String SEARCH_SQL = """
+            WITH q AS (SELECT websearch_to_tsquery('english', :q) AS query),
+            page AS (
+                SELECT d.id, d.title, d.owner_id, d.updated_at, d.content_source_id, r.rank
+                FROM documents d
+                CROSS JOIN q
+                CROSS JOIN LATERAL (
+                    SELECT CAST(coalesce(ts_rank_cd(d.search_vector, q.query), 0)
+                                + similarity(d.title, :q) AS float8) AS rank) r
+                WHERE (d.owner_id = :userId
+                       OR EXISTS (SELECT 1 FROM document_collaborators c
+                                  WHERE c.document_id = d.id AND c.user_id = :userId))
+                  AND (d.search_vector @@ q.query OR d.title % :q)
+                  /*cursor*/
+                ORDER BY r.rank DESC, d.id DESC
+                LIMIT :limit
+            )
+            SELECT p.id, p.title, u.username, p.updated_at, p.rank,
+                   ts_headline('english',
+                               left(coalesce(d.content_snapshot, s.content_snapshot, ''), :headlineChars),
+                               q.query,
+                               'MaxFragments=2, MinWords=5, MaxWords=20, FragmentDelimiter=" ... "') AS snippet
+            FROM page p
+            CROSS JOIN q
+            JOIN users u ON u.id = p.owner_id
+            JOIN documents d ON d.id = p.id
+            LEFT JOIN documents s ON s.id = p.content_source_id
+            ORDER BY p.rank DESC, p.id DESC
+            """;
+
+    private static final String AFTER_CURSOR = "AND (r.rank, d.id) < (CAST(:cursorRank AS float8), CAST(:cursorId AS uuid))";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @param afterRank rank of the last hit of the previous page, or null for the first page
+     * @param afterId   id of the last hit of the previous page, or null for the first page
+     */
+    public List<DocumentSearchHit> search(UUID userId, String query, int limit, Double afterRank, UUID afterId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("q", query)
+                .addValue("userId", userId)
+                .addValue("limit", limit)
+                .addValue("headlineChars", HEADLINE_MAX_CHARS);
+        boolean paged = afterRank != null && afterId != null;
+        if (paged) {
+            params.addValue("cursorRank", afterRank).addValue("cursorId", afterId);
+        }
+        String sql = SEARCH_SQL.replace("/*cursor*/", paged ? AFTER_CURSOR : "");
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new DocumentSearchHit(
+                rs.getObject("id", UUID.class),
+                rs.getString("title"),
+                rs.getString("username"),
+                rs.getString("snippet"),
+                rs.getDouble("rank"),
+                rs.getTimestamp("updated_at") != null ? rs.getTimestamp("updated_at").toInstant() : null
+        ));
+    }
+}
@@ -0,0 +1,79 @@
+package com.collabstack.editor.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes documents.content_snapshot in segments, so documents of hundreds of MB never
+ * have to be held in the JVM as one string. Imported snapshots keep their segments in
+ * document_snapshot_segments (V11) for streamed reads. Runs in the caller's transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DocumentSnapshotRepository {
+
+    private static final String READ_SEGMENTS_SQL =
+            "SELECT segment FROM document_snapshot_segments WHERE document_id = ? ORDER BY seq";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Starts collecting an import in a transaction-local temp table. Each segment is written once;
+     * {@link #finishImport} then writes the snapshot once, instead of rewriting the whole
+     * (TOASTed) value on every append.
+     */
+    public void beginImport() {
+        jdbcTemplate.execute("CREATE TEMP TABLE IF NOT EXISTS import_segments " +
+                "(seq INT PRIMARY KEY, segment TEXT NOT NULL) ON COMMIT DROP");
+    }
+
+    public void appendImportSegment(int seq, String segment) {
+        jdbcTemplate.update("INSERT INTO import_segments (seq, segment) VALUES (?, ?)", seq, segment);
+    }
+
+    /**
+     * Writes the snapshot, then keeps the segments for {@link #readSnapshot} (after the write, which
+     * drops segments of a changed snapshot).
+     */
+    public int finishImport(UUID documentId) {
+        int updated = jdbcTemplate.update("UPDATE documents SET content_snapshot = " +
+                "(SELECT coalesce(string_agg(segment, '' ORDER BY seq), '') FROM import_segments), " +
+                "updated_at = now() WHERE id = ?", documentId);
+        jdbcTemplate.update("INSERT INTO document_snapshot_segments (document_id, seq, segment) " +
+                "SELECT ?, seq, segment FROM import_segments", documentId);
+        jdbcTemplate.execute("DROP TABLE import_segments");
+        return updated;
+    }
+
+    /**
+     * Streams the snapshot to {@code sink}: an imported one as its stored segments, from one
+     * statement fetched a row at a time, so the read is linear and holds one segment. A snapshot
+     * without segments was last written whole by an editing session or a fork, and is read in one go.
+     */
+    public void readSnapshot(UUID documentId, Consumer<String> sink) {
+        AtomicBoolean segmented = new AtomicBoolean();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(READ_SEGMENTS_SQL);
+            ps.setFetchSize(1);
+            ps.setObject(1, documentId);
+            return ps;
+        }, rs -> {
+            segmented.set(true);
+            sink.accept(rs.getString(1));
+        });
+        if (!segmented.get()) {
+            jdbcTemplate.query("SELECT content_snapshot FROM documents WHERE id = ?", rs -> {
+                String content = rs.getString(1);
+                if (content != null) {
+                    sink.accept(content);
+                }
+            }, documentId);
+        }
+    }
+}
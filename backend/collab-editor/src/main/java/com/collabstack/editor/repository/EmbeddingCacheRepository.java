@@ -0,0 +1,103 @@
+package com.collabstack.editor.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC access to embedding_cache. No call opens a transaction of its own, so none needs a second
+ * pooled connection while an indexing transaction holds one: lookups run on the caller's connection,
+ * inside a savepoint when it is in a transaction, so a failed lookup does not abort that transaction.
+ * Writes are meant for a thread outside any transaction (see CachingEmbeddingModel), where each
+ * statement commits on its own and row locks on shared keys are never held until an indexing commit.
+ */
+@Repository
+public class EmbeddingCacheRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EmbeddingCacheRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Map<String, float[]> findAll(List<String> keys) {
+        return jdbcTemplate.execute((ConnectionCallback<Map<String, float[]>>) connection -> {
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT cache_key, embedding FROM embedding_cache WHERE cache_key = ANY(?)")) {
+                ps.setArray(1, connection.createArrayOf("varchar", keys.toArray()));
+                Map<String, float[]> found = new HashMap<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        found.put(rs.getString(1), decode(rs.getBytes(2)));
+                    }
+                }
+                if (savepoint != null) {
+                    connection.releaseSavepoint(savepoint);
+                }
+                return found;
+            } catch (SQLException e) {
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                }
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Marks entries as recently used. Entries touched within the last minute are skipped
+     * to keep hot keys from rewriting their row on every lookup.
+     */
+    public void touch(List<String> keys) {
+        jdbcTemplate.update(
+                "UPDATE embedding_cache SET last_used_at = now() " +
+                "WHERE cache_key = ANY(?) AND last_used_at < now() - interval '1 minute'",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", keys.toArray())));
+    }
+
+    public void saveAll(Map<String, float[]> entries) {
+        List<Map.Entry<String, float[]>> rows = List.copyOf(entries.entrySet());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO embedding_cache (cache_key, embedding, dimensions) VALUES (?, ?, ?) " +
+                "ON CONFLICT (cache_key) DO UPDATE SET last_used_at = now()",
+                rows, rows.size(), (ps, row) -> {
+                    ps.setString(1, row.getKey());
+                    ps.setBytes(2, encode(row.getValue()));
+                    ps.setInt(3, row.getValue().length);
+                });
+    }
+
+    /**
+     * Deletes least recently used entries beyond {@code maxEntries}; returns how many.
+     */
+    public int evictBeyond(long maxEntries) {
+        return jdbcTemplate.update(
+                "DELETE FROM embedding_cache WHERE cache_key IN (" +
+                "  SELECT cache_key FROM embedding_cache ORDER BY last_used_at " +
+                "  LIMIT GREATEST((SELECT count(*) FROM embedding_cache) - ?, 0))",
+                maxEntries);
+    }
+
+    private static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    private static float[] decode(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,40 @@
+package com.collabstack.editor.repository;
+
+import com.collabstack.editor.entity.ReindexJob;
+import com.collabstack.editor.entity.ReindexJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ReindexJobRepository extends JpaRepository<ReindexJob, UUID> {
+
+    Optional<ReindexJob> findFirstByOrderByCreatedAtDesc();
+
+    Optional<ReindexJob> findFirstByStatusInOrderByCreatedAtDesc(Collection<ReindexJobStatus> statuses);
+
+    /**
+     * Advances the checkpoint without touching the status, which pause/cancel may have changed meanwhile.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE reindex_jobs SET last_document_id = :lastDocumentId, processed = processed + :processed, " +
+                   "failed = failed + :failed, updated_at = now() WHERE id = :id", nativeQuery = true)
+    int checkpoint(@Param("id") UUID id, @Param("lastDocumentId") UUID lastDocumentId,
+                   @Param("processed") long processed, @Param("failed") long failed);
+
+    /**
+     * Moves the job from {@code from} to {@code to}; 0 if it was not in {@code from} any more.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE reindex_jobs SET status = :to, updated_at = now(), " +
+                   "finished_at = CASE WHEN :to IN ('COMPLETED', 'CANCELLED') THEN now() END " +
+                   "WHERE id = :id AND status = :from", nativeQuery = true)
+    int transition(@Param("id") UUID id, @Param("from") String from, @Param("to") String to);
+}
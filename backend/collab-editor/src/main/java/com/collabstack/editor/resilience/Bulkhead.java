@@ -0,0 +1,277 @@
+package com.collabstack.editor.resilience;
+
+import com.collabstack.editor.exception.ProviderUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Isolates calls to one external provider: at most {@code maxConcurrent} calls in flight, each with
+ * a deadline, behind a {@link CircuitBreaker}.
+ * <ul>
+ *   <li>Blocking calls ({@link #call}) run on the bulkhead's own threads; the caller waits at most
+ *       {@code maxWait} for a slot and {@code timeout} for the result. A call that outlives its
+ *       deadline keeps its slot until it actually returns, so a hung provider fills the bulkhead
+ *       and further callers are turned away instead of piling up.</li>
+ *   <li>Streams ({@link #stream}) take a slot without waiting and fail if no item arrives within
+ *       {@code timeout} of the previous one.</li>
+ * </ul>
+ * Refusals (circuit open, no slot) and timeouts surface as {@link ProviderUnavailableException}.
+ * Only errors that say the provider is unhealthy (timeouts, I/O errors, 5xx) count against the
+ * circuit; a rejected request (4xx, validation) came back from a working provider.
+ * <p>
+ * Metrics: provider.bulkhead.active / provider.bulkhead.max{provider}, provider.circuit.state{provider}
+ * (0 closed, 1 half-open, 2 open), provider.calls{provider, outcome=success|failure|timeout|rejected|short_circuited}.
+ */
+public class Bulkhead implements AutoCloseable {
+
+    private final String name;
+    private final Semaphore permits;
+    private final long maxWaitNanos;
+    private final Duration timeout;
+    private final CircuitBreaker breaker;
+    private final ThreadPoolExecutor executor;
+
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter timeouts;
+    private final Counter rejections;
+    private final Counter shortCircuits;
+
+    public Bulkhead(String name, int maxConcurrent, Duration maxWait, Duration timeout, CircuitBreaker breaker,
+                    MeterRegistry meterRegistry) {
+        this(name, maxConcurrent, maxWait, timeout, breaker, meterRegistry, daemonThreads(name));
+    }
+
+    Bulkhead(String name, int maxConcurrent, Duration maxWait, Duration timeout, CircuitBreaker breaker,
+             MeterRegistry meterRegistry, ThreadFactory threadFactory) {
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.timeout = timeout;
+        this.breaker = breaker;
+        // Permits bound the number of queued + running tasks, so the queue never grows past maxConcurrent
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("provider.bulkhead.active", permits, p -> maxConcurrent - p.availablePermits())
+                .tag("provider", name).register(meterRegistry);
+        Gauge.builder("provider.bulkhead.max", () -> maxConcurrent).tag("provider", name).register(meterRegistry);
+        Map<CircuitBreaker.State, Integer> stateValues = Map.of(
+                CircuitBreaker.State.CLOSED, 0, CircuitBreaker.State.HALF_OPEN, 1, CircuitBreaker.State.OPEN, 2);
+        Gauge.builder("provider.circuit.state", breaker, b -> stateValues.get(b.state()))
+                .tag("provider", name).register(meterRegistry);
+        this.successes = calls(meterRegistry, "success");
+        this.failures = calls(meterRegistry, "failure");
+        this.timeouts = calls(meterRegistry, "timeout");
+        this.rejections = calls(meterRegistry, "rejected");
+        this.shortCircuits = calls(meterRegistry, "short_circuited");
+    }
+
+    /**
+     * Runs {@code call} on the bulkhead's threads and waits for it up to the deadline.
+     * Runtime exceptions thrown by the call itself are rethrown as they are.
+     * <p>
+     * The slot is released by whichever comes first of the task starting (then when it returns) or
+     * the caller cancelling it, so a task cancelled while still queued does not keep its slot.
+     */
+    public <T> T call(Callable<T> call) {
+        acquire();
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    // Cancelled before it started; the caller released the slot
+                    return null;
+                }
+                try {
+                    return call.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            breaker.release();
+            throw e;
+        }
+        try {
+            T result = future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            breaker.onSuccess();
+            successes.increment();
+            return result;
+        } catch (TimeoutException e) {
+            cancel(future, claimed);
+            breaker.onFailure();
+            timeouts.increment();
+            throw new ProviderUnavailableException(name + " call timed out after " + timeout.toMillis() + " ms");
+        } catch (ExecutionException e) {
+            onError(e.getCause());
+            failures.increment();
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ProviderUnavailableException(name + " call failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(future, claimed);
+            breaker.release();
+            throw new ProviderUnavailableException(name + " call interrupted");
+        }
+    }
+
+    /**
+     * Subscribes to the stream from {@code stream} only if a slot is free right now; the slot is
+     * held until the stream terminates or is cancelled.
+     */
+    public <T> Flux<T> stream(Supplier<Flux<T>> stream) {
+        return Flux.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                shortCircuits.increment();
+                return Flux.error(shortCircuited());
+            }
+            if (!permits.tryAcquire()) {
+                breaker.release();
+                rejections.increment();
+                return Flux.error(rejected());
+            }
+            AtomicBoolean released = new AtomicBoolean();
+            return stream.get()
+                    .timeout(timeout)
+                    .doOnComplete(() -> {
+                        breaker.onSuccess();
+                        successes.increment();
+                    })
+                    .onErrorMap(TimeoutException.class, e -> {
+                        timeouts.increment();
+                        return new ProviderUnavailableException(
+                                name + " stream stalled for " + timeout.toMillis() + " ms");
+                    })
+                    .doOnError(e -> {
+                        onError(e);
+                        if (!(e instanceof ProviderUnavailableException)) {
+                            failures.increment();
+                        }
+                    })
+                    .doOnCancel(breaker::release)
+                    .doFinally(signal -> {
+                        if (released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    });
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Cancels a call and releases its slot if the task never started (it releases its own otherwise).
+     */
+    private void cancel(Future<?> future, AtomicBoolean claimed) {
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true)) {
+            permits.release();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-provider-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void onError(Throwable error) {
+        if (isProviderFailure(error)) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+
+    /**
+     * Whether {@code error} (or a cause of it) is a timeout, an I/O error or a 5xx response.
+     * Spring AI reports 4xx responses as {@link NonTransientAiException} and the rest as
+     * {@link TransientAiException}.
+     */
+    static boolean isProviderFailure(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause() == e ? null : e.getCause()) {
+            if (e instanceof TimeoutException || e instanceof IOException || e instanceof ResourceAccessException
+                    || e instanceof WebClientRequestException || e instanceof TransientAiException
+                    || e instanceof ProviderUnavailableException) {
+                return true;
+            }
+            if (e instanceof RestClientResponseException response) {
+                return response.getStatusCode().is5xxServerError();
+            }
+            if (e instanceof WebClientResponseException response) {
+                return response.getStatusCode().is5xxServerError();
+            }
+            if (e instanceof NonTransientAiException) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void acquire() {
+        if (!breaker.tryAcquire()) {
+            shortCircuits.increment();
+            throw shortCircuited();
+        }
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            breaker.release();
+            rejections.increment();
+            throw rejected();
+        }
+    }
+
+    private ProviderUnavailableException shortCircuited() {
+        return new ProviderUnavailableException(name + " is unavailable (circuit open after repeated failures)");
+    }
+
+    private ProviderUnavailableException rejected() {
+        return new ProviderUnavailableException(name + " is at capacity");
+    }
+
+    private Counter calls(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("provider.calls").tag("provider", name).tag("outcome", outcome).register(meterRegistry);
+    }
+}
@@ -0,0 +1,64 @@
+package com.collabstack.editor.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * One {@link Bulkhead} per AI provider endpoint (app.rag.resilience.*), so a slow chat model cannot
+ * take embedding capacity and vice versa, and neither can hold request or @Async threads for long.
+ * Question embeddings get their own slots and a short wait so bulk indexing cannot stall chat;
+ * they share the embedding circuit, as both call the same endpoint.
+ */
+@Component
+public class ProviderBulkheads {
+
+    private final Bulkhead chat;
+    private final Bulkhead embedding;
+    private final Bulkhead queryEmbedding;
+
+    public ProviderBulkheads(@Value("${app.rag.resilience.chat.max-concurrent:16}") int chatMaxConcurrent,
+                             @Value("${app.rag.resilience.chat.max-wait-ms:500}") long chatMaxWaitMs,
+                             @Value("${app.rag.resilience.chat.timeout-ms:60000}") long chatTimeoutMs,
+                             @Value("${app.rag.resilience.embedding.max-concurrent:8}") int embeddingMaxConcurrent,
+                             @Value("${app.rag.resilience.embedding.max-wait-ms:10000}") long embeddingMaxWaitMs,
+                             @Value("${app.rag.resilience.embedding.timeout-ms:30000}") long embeddingTimeoutMs,
+                             @Value("${app.rag.resilience.query-embedding.max-concurrent:8}") int queryMaxConcurrent,
+                             @Value("${app.rag.resilience.query-embedding.max-wait-ms:250}") long queryMaxWaitMs,
+                             @Value("${app.rag.resilience.query-embedding.timeout-ms:10000}") long queryTimeoutMs,
+                             @Value("${app.rag.resilience.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                             @Value("${app.rag.resilience.circuit-breaker.open-duration-ms:30000}") long openDurationMs,
+                             MeterRegistry meterRegistry) {
+        Duration openDuration = Duration.ofMillis(openDurationMs);
+        this.chat = new Bulkhead("chat", chatMaxConcurrent, Duration.ofMillis(chatMaxWaitMs),
+                Duration.ofMillis(chatTimeoutMs), new CircuitBreaker("chat", failureThreshold, openDuration),
+                meterRegistry);
+        CircuitBreaker embeddingBreaker = new CircuitBreaker("embedding", failureThreshold, openDuration);
+        this.embedding = new Bulkhead("embedding", embeddingMaxConcurrent, Duration.ofMillis(embeddingMaxWaitMs),
+                Duration.ofMillis(embeddingTimeoutMs), embeddingBreaker, meterRegistry);
+        this.queryEmbedding = new Bulkhead("query-embedding", queryMaxConcurrent, Duration.ofMillis(queryMaxWaitMs),
+                Duration.ofMillis(queryTimeoutMs), embeddingBreaker, meterRegistry);
+    }
+
+    public Bulkhead chat() {
+        return chat;
+    }
+
+    public Bulkhead embedding() {
+        return embedding;
+    }
+
+    public Bulkhead queryEmbedding() {
+        return queryEmbedding;
+    }
+
+    @PreDestroy
+    public void close() {
+        chat.close();
+        embedding.close();
+        queryEmbedding.close();
+    }
+}
@@ -0,0 +1,163 @@
+package com.collabstack.editor.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Re-scores retrieved candidates against the question with BM25, in process, and keeps only the
+ * chunks scoring at least {@code min-relative-score} × the best score (app.rag.rerank.*).
+ * Term statistics (document frequency, average length) come from the candidates themselves,
+ * which is all a re-ranker needs to tell them apart.
+ * <p>
+ * The first candidate (the best fused hit) is always kept, so a paraphrased question whose words
+ * appear nowhere still gets context; with no term overlap at all the fused order is returned unchanged.
+ * Vector hits with a similarity of at least {@code min-vector-similarity} are kept as well, whatever
+ * their BM25 score: a paraphrase shares no words with the question by definition. Kept chunks are
+ * ordered by the higher of their relative BM25 score and that similarity, both on a 0..1 scale.
+ */
+@Component
+@Slf4j
+public class Bm25Reranker {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "can", "do", "does", "for", "from", "has",
+            "have", "how", "i", "if", "in", "into", "is", "it", "its", "me", "my", "no", "not", "of", "on", "or",
+            "so", "such", "that", "the", "their", "then", "there", "these", "they", "this", "to", "was", "we",
+            "what", "when", "where", "which", "who", "why", "will", "with", "you", "your");
+
+    private final boolean enabled;
+    private final int candidates;
+    private final double minRelativeScore;
+    private final double minVectorSimilarity;
+    private final double k1;
+    private final double b;
+
+    public Bm25Reranker(@Value("${app.rag.rerank.enabled:true}") boolean enabled,
+                        @Value("${app.rag.rerank.candidates:16}") int candidates,
+                        @Value("${app.rag.rerank.min-relative-score:0.35}") double minRelativeScore,
+                        @Value("${app.rag.rerank.min-vector-similarity:0.75}") double minVectorSimilarity,
+                        @Value("${app.rag.rerank.k1:1.2}") double k1,
+                        @Value("${app.rag.rerank.b:0.75}") double b) {
+        this.enabled = enabled;
+        this.candidates = candidates;
+        this.minRelativeScore = minRelativeScore;
+        this.minVectorSimilarity = minVectorSimilarity;
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * How many fused candidates retrieval should hand to {@link #rerank}.
+     */
+    public int candidates(int topK) {
+        return enabled ? Math.max(topK, candidates) : topK;
+    }
+
+    /**
+     * @param ranked candidates, best first; vector hits carry their similarity as score
+     * @return at most {@code topK} of them, most relevant first
+     */
+    public List<Document> rerank(String question, List<Document> ranked, int topK) {
+        Set<String> queryTerms = new LinkedHashSet<>(terms(question));
+        if (!enabled || queryTerms.isEmpty() || ranked.size() <= 1) {
+            return ranked.subList(0, Math.min(topK, ranked.size()));
+        }
+
+        List<Map<String, Integer>> termFrequencies = new ArrayList<>(ranked.size());
+        int[] lengths = new int[ranked.size()];
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        long totalLength = 0;
+        for (int i = 0; i < ranked.size(); i++) {
+            List<String> terms = terms(ranked.get(i).getText());
+            Map<String, Integer> tf = new HashMap<>();
+            for (String term : terms) {
+                if (queryTerms.contains(term)) {
+                    tf.merge(term, 1, Integer::sum);
+                }
+            }
+            tf.keySet().forEach(term -> documentFrequencies.merge(term, 1, Integer::sum));
+            termFrequencies.add(tf);
+            lengths[i] = terms.size();
+            totalLength += terms.size();
+        }
+        double averageLength = Math.max(1.0, (double) totalLength / ranked.size());
+        int n = ranked.size();
+
+        double[] scores = new double[n];
+        double best = 0;
+        for (int i = 0; i < n; i++) {
+            double score = 0;
+            for (Map.Entry<String, Integer> entry : termFrequencies.get(i).entrySet()) {
+                int df = documentFrequencies.get(entry.getKey());
+                double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                double tf = entry.getValue();
+                score += idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * lengths[i] / averageLength));
+            }
+            scores[i] = score;
+            best = Math.max(best, score);
+        }
+        if (best == 0) {
+            return ranked.subList(0, Math.min(topK, n));
+        }
+
+        double cutoff = best * minRelativeScore;
+        double[] relevance = new double[n];
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double similarity = vectorSimilarity(ranked.get(i));
+            boolean similar = similarity >= minVectorSimilarity;
+            relevance[i] = Math.max(scores[i] / best, similar ? similarity : 0);
+            if (i == 0 || scores[i] >= cutoff || similar) {
+                kept.add(i);
+            }
+        }
+        // Stable: equal scores keep the fused order
+        kept.sort(Comparator.comparingDouble((Integer i) -> relevance[i]).reversed());
+        List<Document> result = kept.stream().limit(topK).map(ranked::get).toList();
+        log.debug("Re-ranked {} candidates to {} chunks (best BM25 {}, cutoff {})", n, result.size(),
+                String.format(Locale.ROOT, "%.2f", best), String.format(Locale.ROOT, "%.2f", cutoff));
+        return result;
+    }
+
+    /**
+     * The similarity a vector store reported for the chunk, or 0 for a lexical-only hit.
+     */
+    private static double vectorSimilarity(Document candidate) {
+        Double score = candidate.getScore();
+        return score != null ? score : 0;
+    }
+
+    /**
+     * Lower-cased words without stopwords, with a plural "s" removed so "chunks" matches "chunk".
+     */
+    private static List<String> terms(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String token : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (token.length() < 2 || STOPWORDS.contains(token)) {
+                continue;
+            }
+            if (token.length() > 3 && token.endsWith("s") && !token.endsWith("ss")) {
+                token = token.substring(0, token.length() - 1);
+            }
+            terms.add(token);
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,326 @@
+package com.collabstack.editor.service;
+
+import com.collabstack.editor.entity.ReindexJob;
+import com.collabstack.editor.entity.ReindexJobStatus;
+import com.collabstack.editor.exception.BadRequestException;
+import com.collabstack.editor.exception.ConflictException;
+import com.collabstack.editor.repository.DocumentRepository;
+import com.collabstack.editor.repository.ReindexJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-indexes every document, e.g. after a chunker or embedding model change, as a resumable job.
+ * <p>
+ * Index documents are walked in id order a page at a time (keyset, so every page costs the same)
+ * and indexed by {@code parallelism} workers, started no faster than {@code maxPerSecond}. After
+ * each page the job row records the last id, so when the application restarts mid-run the job
+ * resumes after the last completed page; at most one page is indexed twice, which is harmless
+ * since indexing is incremental. One job is active (running or paused) at a time.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkReindexService {
+
+    private static final Set<ReindexJobStatus> ACTIVE = Set.of(ReindexJobStatus.RUNNING, ReindexJobStatus.PAUSED);
+
+    private final ReindexJobRepository jobRepository;
+    private final DocumentRepository documentRepository;
+    private final IndexingScheduler indexingScheduler;
+    private final MeterRegistry meterRegistry;
+
+    // Optional — only injected when EmbeddingService bean is available
+    @Autowired(required = false)
+    private EmbeddingService embeddingService;
+
+    @Value("${app.rag.reindex.page-size:100}")
+    private int pageSize;
+
+    @Value("${app.rag.reindex.default-parallelism:2}")
+    private int defaultParallelism;
+
+    @Value("${app.rag.reindex.max-parallelism:8}")
+    private int maxParallelism;
+
+    @Value("${app.rag.reindex.default-max-per-second:5}")
+    private double defaultMaxPerSecond;
+
+    /**
+     * @param documentsPerSecond throughput of the current run while running, else over the job's lifetime
+     */
+    public record JobStatus(UUID id, ReindexJobStatus status, boolean rebuild, int parallelism, double maxPerSecond,
+                            long totalDocuments, long processed, long failed, double percentComplete,
+                            double documentsPerSecond, UUID lastDocumentId, Instant createdAt, Instant updatedAt,
+                            Instant finishedAt) {}
+
+    /**
+     * The run executing in this process, if any.
+     */
+    private final class Run implements Runnable {
+        private final ReindexJob job;
+        private final ExecutorService workers;
+        private final long startedAt = System.nanoTime();
+        private volatile long processed;
+        private volatile boolean stopped;
+        private Thread thread;
+
+        private Run(ReindexJob job) {
+            this.job = job;
+            AtomicInteger workerCount = new AtomicInteger();
+            this.workers = Executors.newFixedThreadPool(job.getParallelism(), r -> {
+                Thread thread = new Thread(r, "reindex-worker-" + workerCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        @Override
+        public void run() {
+            UUID after = job.getLastDocumentId();
+            long intervalNanos = job.getMaxPerSecond() > 0 ? (long) (1_000_000_000L / job.getMaxPerSecond()) : 0;
+            long nextStart = System.nanoTime();
+            try {
+                while (!stopped) {
+                    List<UUID> page = after == null
+                            ? documentRepository.findIndexDocumentIds(pageSize)
+                            : documentRepository.findIndexDocumentIdsAfter(after, pageSize);
+                    if (page.isEmpty()) {
+                        jobRepository.transition(job.getId(), "RUNNING", "COMPLETED");
+                        log.info("Reindex job {} completed: {} documents this run", job.getId(), processed);
+                        break;
+                    }
+                    List<Future<Boolean>> results = new ArrayList<>(page.size());
+                    UUID lastSubmitted = null;
+                    for (UUID documentId : page) {
+                        if (stopped) {
+                            break;
+                        }
+                        // Rate limit: starts are spaced evenly, without bursts after a slow page
+                        long now = System.nanoTime();
+                        if (nextStart > now) {
+                            LockSupport.parkNanos(nextStart - now);
+                        }
+                        nextStart = Math.max(nextStart, now) + intervalNanos;
+                        results.add(workers.submit(() -> reindex(documentId, job.isRebuild())));
+                        lastSubmitted = documentId;
+                    }
+                    long ok = 0;
+                    long failed = 0;
+                    for (Future<Boolean> result : results) {
+                        boolean indexed;
+                        try {
+                            indexed = result.get();
+                        } catch (ExecutionException e) {
+                            indexed = false;
+                        }
+                        if (indexed) {
+                            ok++;
+                        } else {
+                            failed++;
+                        }
+                    }
+                    if (lastSubmitted != null) {
+                        // Everything up to lastSubmitted is done: the page is submitted in id order and awaited
+                        jobRepository.checkpoint(job.getId(), lastSubmitted, ok, failed);
+                        processed += ok + failed;
+                        after = lastSubmitted;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // Left RUNNING: resumed from the checkpoint on next start, or paused/cancelled by an operator
+                log.error("Reindex job {} stopped: {}", job.getId(), e.getMessage());
+            } finally {
+                workers.shutdown();
+                finished(this);
+            }
+        }
+    }
+
+    private volatile Run current;
+
+    private Counter indexedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    void registerMeters() {
+        indexedCounter = Counter.builder("reindex.documents").tag("result", "indexed").register(meterRegistry);
+        failedCounter = Counter.builder("reindex.documents").tag("result", "failed").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeInterrupted() {
+        jobRepository.findFirstByStatusInOrderByCreatedAtDesc(Set.of(ReindexJobStatus.RUNNING)).ifPresent(job -> {
+            log.info("Resuming reindex job {} after document {} ({}/{} done)", job.getId(), job.getLastDocumentId(),
+                    job.getProcessed() + job.getFailed(), job.getTotalDocuments());
+            launch(job);
+        });
+    }
+
+    /**
+     * @param parallelism  documents indexed concurrently (null for the default, capped at max-parallelism)
+     * @param maxPerSecond documents started per second, 0 for unlimited (null for the default)
+     */
+    public synchronized JobStatus start(Integer parallelism, Double maxPerSecond, boolean rebuild) {
+        if (embeddingService == null) {
+            throw new BadRequestException("Indexing is not available");
+        }
+        jobRepository.findFirstByStatusInOrderByCreatedAtDesc(ACTIVE).ifPresent(active -> {
+            throw new ConflictException("Reindex job " + active.getId() + " is " + active.getStatus());
+        });
+        ReindexJob job = jobRepository.save(ReindexJob.builder()
+                .status(ReindexJobStatus.RUNNING)
+                .rebuild(rebuild)
+                .parallelism(Math.max(1, Math.min(parallelism != null ? parallelism : defaultParallelism, maxParallelism)))
+                .maxPerSecond(Math.max(0, maxPerSecond != null ? maxPerSecond : defaultMaxPerSecond))
+                .totalDocuments(documentRepository.countIndexDocuments())
+                .build());
+        log.info("Started reindex job {} over {} documents (parallelism {}, {}/s, rebuild {})", job.getId(),
+                job.getTotalDocuments(), job.getParallelism(), job.getMaxPerSecond(), rebuild);
+        launch(job);
+        return status();
+    }
+
+    /**
+     * Stops after the documents already started; {@link #resume} continues from the checkpoint.
+     */
+    public synchronized JobStatus pause() {
+        transition(activeJob(ReindexJobStatus.RUNNING), ReindexJobStatus.PAUSED);
+        stopCurrent();
+        return status();
+    }
+
+    public synchronized JobStatus resume() {
+        Run run = current;
+        if (run != null) {
+            throw new ConflictException("Reindex job " + run.job.getId() + " is still stopping");
+        }
+        ReindexJob job = activeJob(ReindexJobStatus.PAUSED);
+        transition(job, ReindexJobStatus.RUNNING);
+        launch(job);
+        return status();
+    }
+
+    public synchronized JobStatus cancel() {
+        ReindexJob job = jobRepository.findFirstByStatusInOrderByCreatedAtDesc(ACTIVE)
+                .orElseThrow(() -> new ConflictException("No reindex job is running or paused"));
+        transition(job, ReindexJobStatus.CANCELLED);
+        stopCurrent();
+        return status();
+    }
+
+    /**
+     * The most recent job, or null if there has never been one.
+     */
+    public synchronized JobStatus status() {
+        ReindexJob job = jobRepository.findFirstByOrderByCreatedAtDesc().orElse(null);
+        if (job == null) {
+            return null;
+        }
+        long done = job.getProcessed() + job.getFailed();
+        double rate;
+        Run run = current;
+        if (run != null && run.job.getId().equals(job.getId())) {
+            double seconds = (System.nanoTime() - run.startedAt) / 1e9;
+            rate = seconds > 0 ? run.processed / seconds : 0;
+        } else {
+            Instant end = job.getFinishedAt() != null ? job.getFinishedAt() : job.getUpdatedAt();
+            long millis = job.getCreatedAt() != null && end != null ? Duration.between(job.getCreatedAt(), end).toMillis() : 0;
+            rate = millis > 0 ? done * 1000.0 / millis : 0;
+        }
+        double percent = job.getTotalDocuments() > 0 ? Math.min(100.0, done * 100.0 / job.getTotalDocuments()) : 100.0;
+        return new JobStatus(job.getId(), job.getStatus(), job.isRebuild(), job.getParallelism(),
+                job.getMaxPerSecond(), job.getTotalDocuments(), job.getProcessed(), job.getFailed(), percent, rate,
+                job.getLastDocumentId(), job.getCreatedAt(), job.getUpdatedAt(), job.getFinishedAt());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        Run run = current;
+        if (run == null) {
+            return;
+        }
+        // The job stays RUNNING, so the next start resumes it from the checkpoint
+        run.stopped = true;
+        run.thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Status changes are single-column updates, so they never overwrite a concurrent checkpoint.
+     */
+    private void transition(ReindexJob job, ReindexJobStatus to) {
+        if (jobRepository.transition(job.getId(), job.getStatus().name(), to.name()) == 0) {
+            throw new ConflictException("Reindex job " + job.getId() + " is no longer " + job.getStatus());
+        }
+    }
+
+    private ReindexJob activeJob(ReindexJobStatus status) {
+        return jobRepository.findFirstByStatusInOrderByCreatedAtDesc(Set.of(status))
+                .orElseThrow(() -> new ConflictException("No reindex job is " + status));
+    }
+
+    private void launch(ReindexJob job) {
+        Run run = new Run(job);
+        run.thread = new Thread(run, "reindex-" + job.getId());
+        run.thread.setDaemon(true);
+        current = run;
+        run.thread.start();
+    }
+
+    private void stopCurrent() {
+        Run run = current;
+        if (run != null) {
+            run.stopped = true;
+        }
+    }
+
+    private void finished(Run run) {
+        if (current == run) {
+            current = null;
+        }
+    }
+
+    /**
+     * Through the scheduler's per-document slot, so an edit-triggered run never indexes the same
+     * document concurrently; the snapshot is streamed, so parallel workers never hold whole documents.
+     */
+    private boolean reindex(UUID documentId, boolean rebuild) {
+        try {
+            indexingScheduler.indexNow(documentId, rebuild);
+            indexedCounter.increment();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("Reindex of document {} failed: {}", documentId, e.getMessage());
+            return false;
+        }
+    }
+}
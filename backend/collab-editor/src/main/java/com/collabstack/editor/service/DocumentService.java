@@ -4,16 +4,24 @@ import com.collabstack.editor.dto.request.AddCollaboratorRequest;
 import com.collabstack.editor.dto.request.DocumentCreateRequest;
 import com.collabstack.editor.dto.response.CollaboratorResponse;
 import com.collabstack.editor.dto.response.DocumentResponse;
+import com.collabstack.editor.dto.response.DocumentSearchResponse;
 
+import java.io.Reader;
 import java.util.List;
 import java.util.UUID;
 
 public interface DocumentService {
     DocumentResponse create(UUID userId, DocumentCreateRequest request);
+    DocumentResponse importDocument(UUID userId, String title, Reader content);
     DocumentResponse findById(UUID documentId, UUID requestingUserId);
+    DocumentResponse findSummaryById(UUID documentId, UUID requestingUserId);
     List<DocumentResponse> findAllForUser(UUID userId);
+    DocumentSearchResponse search(UUID userId, String query, int limit, String cursor);
     DocumentResponse updateTitle(UUID documentId, UUID userId, String newTitle);
     void delete(UUID documentId, UUID userId);
+    DocumentResponse fork(UUID documentId, UUID userId, String title);
+    void detachForks(UUID sourceDocumentId);
+    UUID resolveIndexDocumentId(UUID documentId);
     CollaboratorResponse addCollaborator(UUID documentId, UUID ownerUserId, AddCollaboratorRequest request);
     List<CollaboratorResponse> getCollaborators(UUID documentId, UUID userId);
 }
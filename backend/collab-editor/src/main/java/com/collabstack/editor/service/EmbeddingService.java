@@ -4,6 +4,18 @@ import java.util.UUID;
 
 public interface EmbeddingService {
     void indexDocument(UUID documentId, String fullContent);
+
+    /**
+     * With {@code rebuild}, every chunk is replaced and re-embedded, even if its text is unchanged.
+     */
+    void indexDocument(UUID documentId, String fullContent, boolean rebuild);
+
+    /**
+     * Indexes the document's stored snapshot, read in segments, unless the document is gone or
+     * is a fork still sharing its source's content.
+     */
+    void indexStoredDocument(UUID documentId, boolean rebuild);
     void reindexChunk(UUID documentId, int chunkIndex, String chunkContent);
     void deleteDocumentChunks(UUID documentId);
+    void copyIndex(UUID sourceDocumentId, UUID targetDocumentId);
 }
@@ -0,0 +1,155 @@
+package com.collabstack.editor.service;
+
+import com.collabstack.editor.entity.DocumentChunk;
+import com.collabstack.editor.repository.DocumentChunkRepository;
+import com.collabstack.editor.repository.DocumentChunkSearchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Retrieves a document's most relevant chunks by running a full-text query over document_chunks
+ * and a vector similarity search in parallel, then merging both rankings with reciprocal rank
+ * fusion: score = Σ 1 / (rrf-k + rank). Exact identifiers and names that embeddings blur are
+ * caught lexically, paraphrases semantically. Either side failing (or the vector store being
+ * disabled) degrades to the other one. The fused candidates are then cut down to the chunks
+ * that actually match the question by {@link Bm25Reranker}, and given their stored overlapChars
+ * so the context packer can join neighbours.
+ */
+@Component
+@Slf4j
+public class HybridRetriever {
+
+    private final DocumentChunkSearchRepository chunkSearchRepository;
+    private final DocumentChunkRepository chunkRepository;
+    private final Bm25Reranker reranker;
+    private final int topK;
+    private final int vectorCandidates;
+    private final int lexicalCandidates;
+    private final int rrfK;
+
+    // Optional — only available when app.rag.enabled=true
+    @Autowired(required = false)
+    private VectorStore vectorStore;
+
+    public HybridRetriever(DocumentChunkSearchRepository chunkSearchRepository,
+                           DocumentChunkRepository chunkRepository, Bm25Reranker reranker,
+                           @Value("${app.rag.retrieval.top-k:6}") int topK,
+                           @Value("${app.rag.retrieval.vector-candidates:12}") int vectorCandidates,
+                           @Value("${app.rag.retrieval.lexical-candidates:12}") int lexicalCandidates,
+                           @Value("${app.rag.retrieval.rrf-k:60}") int rrfK) {
+        this.chunkSearchRepository = chunkSearchRepository;
+        this.chunkRepository = chunkRepository;
+        this.reranker = reranker;
+        this.topK = topK;
+        this.vectorCandidates = vectorCandidates;
+        this.lexicalCandidates = lexicalCandidates;
+        this.rrfK = rrfK;
+    }
+
+    public boolean isVectorSearchEnabled() {
+        return vectorStore != null;
+    }
+
+    /**
+     * Up to top-k chunks of {@code indexDocumentId}, best first. Ids are chunk ids.
+     */
+    public List<Document> retrieve(UUID indexDocumentId, String question) {
+        Mono<List<Document>> lexical = Mono.fromCallable(() -> lexicalSearch(indexDocumentId, question))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.error("Lexical chunk search failed for document {}: {}", indexDocumentId, e.getMessage());
+                    return Mono.just(Collections.emptyList());
+                });
+        Mono<List<Document>> semantic = vectorStore == null
+                ? Mono.just(Collections.emptyList())
+                : Mono.fromCallable(() -> vectorSearch(indexDocumentId, question))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> {
+                            log.error("Vector similarity search failed for document {}: {}",
+                                    indexDocumentId, e.getMessage());
+                            return Mono.just(Collections.emptyList());
+                        });
+        return Mono.zip(semantic, lexical)
+                .map(results -> reranker.rerank(question, fuse(results.getT1(), results.getT2()), topK))
+                .map(this::withOverlaps)
+                .block();
+    }
+
+    /**
+     * Adds each chunk's overlapChars (when known) to its metadata; vector hits do not carry it.
+     */
+    private List<Document> withOverlaps(List<Document> ranked) {
+        if (ranked.isEmpty()) {
+            return ranked;
+        }
+        Map<UUID, Integer> overlaps = new HashMap<>();
+        chunkRepository.findOverlapsByIdIn(ranked.stream().map(d -> UUID.fromString(d.getId())).toList())
+                .forEach(o -> overlaps.put(o.getId(), o.getOverlapChars()));
+        return ranked.stream().map(d -> {
+            Integer overlap = overlaps.get(UUID.fromString(d.getId()));
+            if (overlap == null) {
+                return d;
+            }
+            Map<String, Object> metadata = new HashMap<>(d.getMetadata());
+            metadata.put("overlapChars", overlap);
+            return Document.builder().id(d.getId()).text(d.getText()).metadata(metadata).score(d.getScore()).build();
+        }).toList();
+    }
+
+    private List<Document> vectorSearch(UUID indexDocumentId, String question) {
+        return vectorStore.similaritySearch(
+                SearchRequest.builder()
+                        .query(question)
+                        .topK(vectorCandidates)
+                        .filterExpression("documentId == '" + indexDocumentId + "'")
+                        .build());
+    }
+
+    private List<Document> lexicalSearch(UUID indexDocumentId, String question) {
+        return chunkSearchRepository.search(indexDocumentId, question, lexicalCandidates).stream()
+                .map(HybridRetriever::toAiDocument)
+                .toList();
+    }
+
+    /**
+     * Reciprocal rank fusion; on equal scores the semantic ranking wins (listed first).
+     */
+    private List<Document> fuse(List<Document> semantic, List<Document> lexical) {
+        Map<String, Document> byId = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        for (List<Document> ranking : List.of(semantic, lexical)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                byId.putIfAbsent(document.getId(), document);
+                scores.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+            }
+        }
+        return byId.values().stream()
+                .sorted(Comparator.comparingDouble((Document d) -> scores.get(d.getId())).reversed())
+                .limit(reranker.candidates(topK))
+                .toList();
+    }
+
+    private static Document toAiDocument(DocumentChunk chunk) {
+        return new Document(
+                chunk.getId().toString(),
+                chunk.getContent(),
+                Map.of("documentId", chunk.getDocumentId().toString(), "chunkIndex", chunk.getChunkIndex())
+        );
+    }
+}
@@ -0,0 +1,22 @@
+package com.collabstack.editor.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * /actuator/indexing — aggregate state of the re-indexing queue.
+ */
+@Component
+@Endpoint(id = "indexing")
+@RequiredArgsConstructor
+public class IndexingEndpoint {
+
+    private final IndexingScheduler indexingScheduler;
+
+    @ReadOperation
+    public IndexingScheduler.QueueSnapshot queue() {
+        return indexingScheduler.snapshot();
+    }
+}
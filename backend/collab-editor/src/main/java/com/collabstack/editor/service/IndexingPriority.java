@@ -0,0 +1,10 @@
+package com.collabstack.editor.service;
+
+/**
+ * Order in which due re-index requests are dispatched. HIGH also skips the debounce.
+ */
+public enum IndexingPriority {
+    HIGH,
+    NORMAL,
+    LOW
+}
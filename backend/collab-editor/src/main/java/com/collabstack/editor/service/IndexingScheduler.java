@@ -0,0 +1,259 @@
+package com.collabstack.editor.service;
+
+import com.collabstack.editor.dto.response.IndexingStatusResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single entry point for re-embedding documents.
+ * <p>
+ * Requests are keyed by document: a new request for a pending document only pushes its due time
+ * back (debounce, capped by max-delay) and raises its priority, so a burst of saves costs one run.
+ * Content is streamed from the database when the run starts, so the latest snapshot always wins.
+ * At most one run per document is in flight, on a small worker pool separate from the @Async
+ * pool used for op persistence. Requests made inside a transaction are enqueued after commit.
+ * A failed run (rolled back) is queued again after {@code retry-delay-ms}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IndexingScheduler {
+
+    private final MeterRegistry meterRegistry;
+
+    // Optional — only injected when EmbeddingService bean is available
+    @Autowired(required = false)
+    private EmbeddingService embeddingService;
+
+    @Value("${app.rag.indexing.debounce-ms:5000}")
+    private long debounceMs;
+
+    @Value("${app.rag.indexing.max-delay-ms:60000}")
+    private long maxDelayMs;
+
+    @Value("${app.rag.indexing.workers:2}")
+    private int workers;
+
+    @Value("${app.rag.indexing.dispatch-interval-ms:200}")
+    private long dispatchIntervalMs;
+
+    @Value("${app.rag.indexing.retry-delay-ms:60000}")
+    private long retryDelayMs;
+
+    public record PendingIndex(UUID documentId, IndexingPriority priority, Instant firstRequestedAt,
+                               Instant dueAt, int requests) {}
+
+    /**
+     * Aggregate queue state; deliberately free of document ids.
+     */
+    public record QueueSnapshot(int pending, int running, int workers, Map<IndexingPriority, Integer> pendingByPriority,
+                                long oldestPendingMs) {}
+
+    private final ConcurrentHashMap<UUID, PendingIndex> pending = new ConcurrentHashMap<>();
+    private final Set<UUID> running = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService dispatcher;
+    private ExecutorService workerPool;
+    private Semaphore permits;
+
+    private Counter coalesced;
+    private Timer runTimer;
+    private Counter failures;
+
+    @PostConstruct
+    void start() {
+        permits = new Semaphore(workers);
+        AtomicInteger workerCount = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "indexing-worker-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "indexing-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(this::dispatch, dispatchIntervalMs, dispatchIntervalMs, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("indexing.queue.pending", pending, Map::size).register(meterRegistry);
+        Gauge.builder("indexing.queue.running", running, Set::size).register(meterRegistry);
+        coalesced = Counter.builder("indexing.requests.coalesced").register(meterRegistry);
+        failures = Counter.builder("indexing.runs.failed").register(meterRegistry);
+        runTimer = Timer.builder("indexing.run").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        dispatcher.shutdownNow();
+        workerPool.shutdown();
+        if (!workerPool.awaitTermination(10, TimeUnit.SECONDS)) {
+            workerPool.shutdownNow();
+        }
+        if (!pending.isEmpty()) {
+            log.info("Indexing scheduler stopped with {} pending documents; they re-index on next save", pending.size());
+        }
+    }
+
+    public void schedule(UUID documentId, IndexingPriority priority) {
+        if (embeddingService == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(documentId, priority);
+                }
+            });
+        } else {
+            enqueue(documentId, priority);
+        }
+    }
+
+    /**
+     * Indexes a document on the caller's thread, holding the same per-document slot as queued
+     * runs: it waits for a queued run of the document to finish, and a queued run waits for it.
+     * For bulk re-index, which brings its own workers and rate limit.
+     */
+    public void indexNow(UUID documentId, boolean rebuild) throws InterruptedException {
+        while (!running.add(documentId)) {
+            Thread.sleep(dispatchIntervalMs);
+        }
+        try {
+            embeddingService.indexStoredDocument(documentId, rebuild);
+        } finally {
+            running.remove(documentId);
+        }
+    }
+
+    public IndexingStatusResponse status(UUID documentId) {
+        PendingIndex entry = pending.get(documentId);
+        if (running.contains(documentId)) {
+            return new IndexingStatusResponse("RUNNING", entry != null ? entry.priority() : null,
+                    entry != null ? entry.dueAt() : null, entry != null ? entry.requests() : 0);
+        }
+        if (entry != null) {
+            return new IndexingStatusResponse("PENDING", entry.priority(), entry.dueAt(), entry.requests());
+        }
+        return new IndexingStatusResponse("IDLE", null, null, 0);
+    }
+
+    public QueueSnapshot snapshot() {
+        Map<IndexingPriority, Integer> byPriority = new EnumMap<>(IndexingPriority.class);
+        Instant oldest = null;
+        for (PendingIndex entry : pending.values()) {
+            byPriority.merge(entry.priority(), 1, Integer::sum);
+            if (oldest == null || entry.firstRequestedAt().isBefore(oldest)) {
+                oldest = entry.firstRequestedAt();
+            }
+        }
+        long oldestMs = oldest != null ? Duration.between(oldest, Instant.now()).toMillis() : 0;
+        return new QueueSnapshot(pending.size(), running.size(), workers, byPriority, oldestMs);
+    }
+
+    private void enqueue(UUID documentId, IndexingPriority priority) {
+        Instant now = Instant.now();
+        pending.compute(documentId, (id, existing) -> {
+            if (existing == null) {
+                return new PendingIndex(id, priority, now, dueAt(now, now, priority), 1);
+            }
+            coalesced.increment();
+            IndexingPriority effective = priority.compareTo(existing.priority()) < 0 ? priority : existing.priority();
+            return new PendingIndex(id, effective, existing.firstRequestedAt(),
+                    dueAt(existing.firstRequestedAt(), now, effective), existing.requests() + 1);
+        });
+    }
+
+    private Instant dueAt(Instant firstRequestedAt, Instant now, IndexingPriority priority) {
+        if (priority == IndexingPriority.HIGH) {
+            return now;
+        }
+        Instant debounced = now.plusMillis(debounceMs);
+        Instant latest = firstRequestedAt.plusMillis(maxDelayMs);
+        return debounced.isAfter(latest) ? latest : debounced;
+    }
+
+    void dispatch() {
+        try {
+            Instant now = Instant.now();
+            List<PendingIndex> due = pending.values().stream()
+                    .filter(entry -> !entry.dueAt().isAfter(now) && !running.contains(entry.documentId()))
+                    .sorted(Comparator.comparing(PendingIndex::priority).thenComparing(PendingIndex::dueAt))
+                    .toList();
+            for (PendingIndex entry : due) {
+                if (!permits.tryAcquire()) {
+                    break;
+                }
+                UUID documentId = entry.documentId();
+                // Claimed by indexNow since we looked: leave it for a later tick
+                if (!running.add(documentId)) {
+                    permits.release();
+                    continue;
+                }
+                // Re-requested since we looked: leave it for a later tick with its new due time
+                if (!pending.remove(documentId, entry)) {
+                    running.remove(documentId);
+                    permits.release();
+                    continue;
+                }
+                workerPool.execute(() -> {
+                    try {
+                        runTimer.record(() -> run(documentId));
+                    } finally {
+                        running.remove(documentId);
+                        permits.release();
+                    }
+                });
+            }
+        } catch (Exception e) {
+            log.error("Indexing dispatch failed: {}", e.getMessage());
+        }
+    }
+
+    private void run(UUID documentId) {
+        try {
+            embeddingService.indexStoredDocument(documentId, false);
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Indexing failed for document {}, retrying in {} ms: {}", documentId, retryDelayMs, e.getMessage());
+            retry(documentId);
+        }
+    }
+
+    /**
+     * Queues a failed document again, unless it was re-requested while running (that run is due anyway).
+     */
+    private void retry(UUID documentId) {
+        Instant now = Instant.now();
+        pending.putIfAbsent(documentId,
+                new PendingIndex(documentId, IndexingPriority.LOW, now, now.plusMillis(retryDelayMs), 1));
+    }
+}
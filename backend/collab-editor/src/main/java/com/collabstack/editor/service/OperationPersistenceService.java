@@ -5,13 +5,17 @@ import com.collabstack.editor.entity.Document;
 import com.collabstack.editor.entity.DocumentOperation;
 import com.collabstack.editor.repository.DocumentOperationRepository;
 import com.collabstack.editor.repository.DocumentRepository;
+import com.collabstack.editor.websocket.DocumentSession;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -21,6 +25,9 @@ public class OperationPersistenceService {
 
     private final DocumentOperationRepository operationRepository;
     private final DocumentRepository documentRepository;
+    private final DocumentService documentService;
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexingScheduler indexingScheduler;
 
     // Optional — only injected when EmbeddingService bean is available
     @Autowired(required = false)
@@ -58,17 +65,52 @@ public class OperationPersistenceService {
         try {
             Document document = documentRepository.findById(documentId).orElse(null);
             if (document != null) {
+                // Copy-on-write: forks sharing this snapshot keep the old content
+                documentService.detachForks(documentId);
+                if (document.getContentSourceId() != null) {
+                    // This document is a fork diverging from its source — take over a copy of the index
+                    if (embeddingService != null) {
+                        embeddingService.copyIndex(document.getContentSourceId(), documentId);
+                    }
+                    document.setContentSourceId(null);
+                }
                 document.setContentSnapshot(content);
                 document.setCurrentRevision(revision);
                 documentRepository.save(document);
+                documentRepository.refreshSearchVector(documentId);
                 log.info("Snapshot saved for document {} at revision {}", documentId, revision);
             }
         } catch (Exception e) {
             log.error("Failed to save snapshot for document {}: {}", documentId, e.getMessage());
         }
-        // Re-index for RAG after snapshot is persisted
-        if (embeddingService != null && content != null && !content.isBlank()) {
-            embeddingService.indexDocument(documentId, content);
+        // Re-index for RAG once the snapshot is committed; bursts of saves coalesce into one run
+        if (content != null && !content.isBlank()) {
+            indexingScheduler.schedule(documentId, IndexingPriority.NORMAL);
         }
     }
+
+    /**
+     * Writes a batch of snapshots synchronously in one transaction with a single batched UPDATE.
+     * Used by the shutdown flush; RAG re-indexing is left to the next regular checkpoint.
+     */
+    @Transactional
+    public void saveSnapshots(List<DocumentSession.Checkpoint> checkpoints) {
+        List<UUID> ids = checkpoints.stream().map(DocumentSession.Checkpoint::documentId).toList();
+        ids.forEach(documentService::detachForks);
+        if (embeddingService != null) {
+            documentRepository.findSharingForks(ids)
+                    .forEach(link -> embeddingService.copyIndex(link.getContentSourceId(), link.getId()));
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(
+                "UPDATE documents SET content_snapshot = ?, current_revision = ?, content_source_id = NULL, " +
+                "updated_at = ? WHERE id = ?",
+                checkpoints, checkpoints.size(), (ps, checkpoint) -> {
+                    ps.setString(1, checkpoint.content());
+                    ps.setLong(2, checkpoint.revision());
+                    ps.setTimestamp(3, now);
+                    ps.setObject(4, checkpoint.documentId());
+                });
+        ids.forEach(documentRepository::refreshSearchVector);
+    }
 }
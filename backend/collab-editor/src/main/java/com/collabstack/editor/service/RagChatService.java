@@ -2,9 +2,17 @@ package com.collabstack.editor.service;
 
 import com.collabstack.editor.dto.request.ChatRequest;
 import com.collabstack.editor.dto.response.ChatResponse;
+import com.collabstack.editor.dto.response.ChatStreamEvent;
+import reactor.core.publisher.Flux;
 
 import java.util.UUID;
 
 public interface RagChatService {
     ChatResponse chat(UUID documentId, UUID userId, ChatRequest request);
+
+    /**
+     * Access is checked before returning; retrieval and generation run when subscribed,
+     * and cancelling the subscription cancels the model call.
+     */
+    Flux<ChatStreamEvent> chatStream(UUID documentId, UUID userId, ChatRequest request);
 }
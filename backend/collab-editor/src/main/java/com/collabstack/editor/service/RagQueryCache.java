@@ -0,0 +1,101 @@
+package com.collabstack.editor.service;
+
+import com.collabstack.editor.dto.response.ChatResponse;
+import com.collabstack.editor.util.LruCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * In-process caches for repeated RAG questions, keyed by {@link Key}:
+ * <ul>
+ *   <li>retrieval — ids of the top-K chunks, so a repeat skips embedding the question and the vector search;</li>
+ *   <li>answer (optional, app.rag.answer-cache.enabled) — the final response, so a repeat skips the model too.</li>
+ * </ul>
+ * The key includes the document's index_version, which every re-index bumps, so entries for an
+ * outdated index are never hit again and simply age out of the LRU.
+ * <p>
+ * Metrics: rag.cache.lookups{cache=retrieval|answer, result=hit|miss}, rag.cache.size{cache}.
+ */
+@Component
+public class RagQueryCache {
+
+    public record Key(UUID indexDocumentId, long indexVersion, String question) {
+        public static Key of(UUID indexDocumentId, long indexVersion, String question) {
+            return new Key(indexDocumentId, indexVersion, normalize(question));
+        }
+    }
+
+    private final LruCache<Key, List<UUID>> retrieval;
+    private final LruCache<Key, ChatResponse> answers;
+    private final boolean answersEnabled;
+
+    private final Counter retrievalHits;
+    private final Counter retrievalMisses;
+    private final Counter answerHits;
+    private final Counter answerMisses;
+
+    public RagQueryCache(@Value("${app.rag.query-cache.max-entries:2000}") int retrievalMaxEntries,
+                         @Value("${app.rag.answer-cache.enabled:false}") boolean answersEnabled,
+                         @Value("${app.rag.answer-cache.max-entries:500}") int answerMaxEntries,
+                         MeterRegistry meterRegistry) {
+        this.retrieval = new LruCache<>(retrievalMaxEntries);
+        this.answers = new LruCache<>(answerMaxEntries);
+        this.answersEnabled = answersEnabled;
+        this.retrievalHits = lookups(meterRegistry, "retrieval", "hit");
+        this.retrievalMisses = lookups(meterRegistry, "retrieval", "miss");
+        this.answerHits = lookups(meterRegistry, "answer", "hit");
+        this.answerMisses = lookups(meterRegistry, "answer", "miss");
+        Gauge.builder("rag.cache.size", retrieval, LruCache::size).tag("cache", "retrieval").register(meterRegistry);
+        Gauge.builder("rag.cache.size", answers, LruCache::size).tag("cache", "answer").register(meterRegistry);
+    }
+
+    /**
+     * Chunk ids in rank order, or null.
+     */
+    public List<UUID> chunkIds(Key key) {
+        List<UUID> ids = retrieval.get(key);
+        (ids != null ? retrievalHits : retrievalMisses).increment();
+        return ids;
+    }
+
+    public void putChunkIds(Key key, List<UUID> ids) {
+        retrieval.put(key, List.copyOf(ids));
+    }
+
+    /**
+     * The cached answer, or null (always null when the answer cache is disabled).
+     */
+    public ChatResponse answer(Key key) {
+        if (!answersEnabled) {
+            return null;
+        }
+        ChatResponse answer = answers.get(key);
+        (answer != null ? answerHits : answerMisses).increment();
+        return answer;
+    }
+
+    public void putAnswer(Key key, ChatResponse answer) {
+        if (answersEnabled) {
+            answers.put(key, answer);
+        }
+    }
+
+    /**
+     * Case, surrounding/repeated whitespace and trailing punctuation don't change the question.
+     */
+    static String normalize(String question) {
+        String normalized = question.strip().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        return normalized.replaceAll("[\\s?!.]+$", "");
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String cache, String result) {
+        return Counter.builder("rag.cache.lookups").tag("cache", cache).tag("result", result).register(meterRegistry);
+    }
+}
@@ -0,0 +1,44 @@
+package com.collabstack.editor.service;
+
+import com.collabstack.editor.exception.BadRequestException;
+import com.collabstack.editor.exception.ConflictException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * /actuator/reindex — status and throughput of the latest bulk re-index job (GET), and
+ * POST {"action": "start" | "pause" | "resume" | "cancel", "parallelism", "maxPerSecond", "rebuild"}.
+ */
+@Component
+@Endpoint(id = "reindex")
+@RequiredArgsConstructor
+public class ReindexEndpoint {
+
+    private final BulkReindexService bulkReindexService;
+
+    @ReadOperation
+    public Object status() {
+        BulkReindexService.JobStatus status = bulkReindexService.status();
+        return status != null ? status : "No reindex job has been run";
+    }
+
+    @WriteOperation
+    public Object control(String action, @Nullable Integer parallelism, @Nullable Double maxPerSecond,
+                          @Nullable Boolean rebuild) {
+        try {
+            return switch (action) {
+                case "start" -> bulkReindexService.start(parallelism, maxPerSecond, Boolean.TRUE.equals(rebuild));
+                case "pause" -> bulkReindexService.pause();
+                case "resume" -> bulkReindexService.resume();
+                case "cancel" -> bulkReindexService.cancel();
+                default -> "Unknown action: " + action;
+            };
+        } catch (ConflictException | BadRequestException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.collabstack.editor.service;
+
+import com.collabstack.editor.dto.request.SemanticSearchRequest;
+import com.collabstack.editor.dto.response.SemanticSearchResponse;
+
+import java.util.UUID;
+
+public interface SemanticSearchService {
+
+    /**
+     * Chunks most similar to the query across every document the user owns or collaborates on.
+     */
+    SemanticSearchResponse search(UUID userId, SemanticSearchRequest request);
+}
@@ -4,24 +4,37 @@ import com.collabstack.editor.dto.request.AddCollaboratorRequest;
 import com.collabstack.editor.dto.request.DocumentCreateRequest;
 import com.collabstack.editor.dto.response.CollaboratorResponse;
 import com.collabstack.editor.dto.response.DocumentResponse;
+import com.collabstack.editor.dto.response.DocumentSearchHit;
+import com.collabstack.editor.dto.response.DocumentSearchResponse;
 import com.collabstack.editor.entity.Document;
 import com.collabstack.editor.entity.DocumentCollaborator;
 import com.collabstack.editor.entity.User;
+import com.collabstack.editor.exception.BadRequestException;
 import com.collabstack.editor.exception.ConflictException;
 import com.collabstack.editor.exception.ResourceNotFoundException;
+import com.collabstack.editor.exception.StorageException;
 import com.collabstack.editor.exception.UnauthorizedException;
 import com.collabstack.editor.mapper.DocumentMapper;
 import com.collabstack.editor.repository.DocumentCollaboratorRepository;
 import com.collabstack.editor.repository.DocumentRepository;
+import com.collabstack.editor.repository.DocumentSearchRepository;
+import com.collabstack.editor.repository.DocumentSnapshotRepository;
 import com.collabstack.editor.repository.UserRepository;
 import com.collabstack.editor.service.DocumentService;
 import com.collabstack.editor.service.EmbeddingService;
+import com.collabstack.editor.service.IndexingPriority;
+import com.collabstack.editor.service.IndexingScheduler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 import java.util.UUID;
 
@@ -30,15 +43,23 @@ import java.util.UUID;
 @Slf4j
 public class DocumentServiceImpl implements DocumentService {
 
+    private static final int MAX_SEARCH_LIMIT = 50;
+
     private final DocumentRepository documentRepository;
+    private final DocumentSearchRepository documentSearchRepository;
+    private final DocumentSnapshotRepository snapshotRepository;
     private final DocumentCollaboratorRepository collaboratorRepository;
     private final UserRepository userRepository;
     private final DocumentMapper documentMapper;
+    private final IndexingScheduler indexingScheduler;
 
     // Optional — only injected when EmbeddingService bean is available
     @Autowired(required = false)
     private EmbeddingService embeddingService;
 
+    @Value("${app.import.segment-chars:1048576}")
+    private int importSegmentChars;
+
     @Override
     @Transactional
     public DocumentResponse create(UUID userId, DocumentCreateRequest request) {
@@ -51,13 +72,58 @@ public class DocumentServiceImpl implements DocumentService {
                 .currentRevision(0L)
                 .build();
         Document saved = documentRepository.save(document);
-        // Async index initial content if non-empty
-        if (embeddingService != null && saved.getContentSnapshot() != null && !saved.getContentSnapshot().isBlank()) {
-            embeddingService.indexDocument(saved.getId(), saved.getContentSnapshot());
+        documentRepository.refreshSearchVector(saved.getId());
+        // Index initial content if non-empty (after commit, via the indexing queue)
+        if (saved.getContentSnapshot() != null && !saved.getContentSnapshot().isBlank()) {
+            indexingScheduler.schedule(saved.getId(), IndexingPriority.NORMAL);
         }
         return documentMapper.toResponse(saved);
     }
 
+    /**
+     * Creates a document from a streamed upload. Segments are collected in the database and the
+     * snapshot is written once at the end, so heap use is bounded by the segment size and the
+     * write cost is linear. The segments are kept, and indexing (queued after commit) streams them
+     * back in order.
+     */
+    @Override
+    @Transactional
+    public DocumentResponse importDocument(UUID userId, String title, Reader content) {
+        User owner = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + userId));
+        Document saved = documentRepository.saveAndFlush(Document.builder()
+                .owner(owner)
+                .title(title)
+                .contentSnapshot("")
+                .currentRevision(0L)
+                .build());
+        UUID documentId = saved.getId();
+        log.info("Importing document {} for user {}", documentId, userId);
+
+        snapshotRepository.beginImport();
+        char[] buffer = new char[importSegmentChars];
+        long totalChars = 0;
+        int segments = 0;
+        try {
+            int filled;
+            while ((filled = fill(content, buffer)) > 0) {
+                snapshotRepository.appendImportSegment(segments++, new String(buffer, 0, filled));
+                totalChars += filled;
+            }
+        } catch (IOException e) {
+            throw new StorageException("Failed to read import stream: " + e.getMessage());
+        }
+        snapshotRepository.finishImport(documentId);
+
+        documentRepository.refreshSearchVector(documentId);
+        if (totalChars > 0) {
+            indexingScheduler.schedule(documentId, IndexingPriority.NORMAL);
+        }
+        log.info("Imported document {}: {} chars in {} segments", documentId, totalChars, segments);
+        // The managed entity still holds the empty initial snapshot — never echo or re-save it
+        return documentMapper.toSummaryResponse(saved);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public DocumentResponse findById(UUID documentId, UUID requestingUserId) {
@@ -66,6 +132,22 @@ public class DocumentServiceImpl implements DocumentService {
         return documentMapper.toResponse(document);
     }
 
+    /**
+     * Metadata and content length, read without loading the content, so the client can decide
+     * on paged mode before fetching a large document.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public DocumentResponse findSummaryById(UUID documentId, UUID requestingUserId) {
+        DocumentRepository.DocumentSummary summary = documentRepository.findSummaryById(documentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Document not found: " + documentId));
+        if (!summary.getOwnerId().equals(requestingUserId)
+                && !collaboratorRepository.existsByDocument_IdAndUser_Id(documentId, requestingUserId)) {
+            throw new UnauthorizedException("You do not have access to this document");
+        }
+        return documentMapper.toSummaryResponse(summary, documentRepository.findContentLength(documentId).orElse(0L));
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<DocumentResponse> findAllForUser(UUID userId) {
@@ -74,20 +156,60 @@ public class DocumentServiceImpl implements DocumentService {
         return documentMapper.toResponseList(documents);
     }
 
+    /**
+     * Ranked search over the titles and content of documents the user owns or collaborates on.
+     * The cursor is opaque to clients: it encodes the (rank, id) of the last hit returned.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public DocumentSearchResponse search(UUID userId, String query, int limit, String cursor) {
+        if (query == null || query.isBlank()) {
+            return new DocumentSearchResponse(List.of(), null);
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        Double afterRank = null;
+        UUID afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+                afterRank = Double.parseDouble(parts[0]);
+                afterId = UUID.fromString(parts[1]);
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new BadRequestException("Invalid search cursor");
+            }
+        }
+        List<DocumentSearchHit> hits = documentSearchRepository.search(userId, query.strip(), pageSize, afterRank, afterId);
+        String nextCursor = null;
+        if (hits.size() == pageSize) {
+            DocumentSearchHit last = hits.get(hits.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((last.rank() + ":" + last.id()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new DocumentSearchResponse(hits, nextCursor);
+    }
+
     @Override
     @Transactional
     public DocumentResponse updateTitle(UUID documentId, UUID userId, String newTitle) {
         Document document = getDocumentOrThrow(documentId);
         assertOwner(document, userId);
         document.setTitle(newTitle);
-        return documentMapper.toResponse(documentRepository.save(document));
+        Document saved = documentRepository.save(document);
+        documentRepository.refreshSearchVector(documentId);
+        return documentMapper.toResponse(saved);
     }
 
+    /**
+     * Forks still sharing the document's content get their own copy first; the row lock keeps a
+     * fork created meanwhile from being left without content.
+     */
     @Override
     @Transactional
     public void delete(UUID documentId, UUID userId) {
         Document document = getDocumentOrThrow(documentId);
         assertOwner(document, userId);
+        documentRepository.lockById(documentId);
+        detachForks(documentId);
         documentRepository.delete(document);
         // Clean up vector store chunks async
         if (embeddingService != null) {
@@ -95,6 +217,57 @@ public class DocumentServiceImpl implements DocumentService {
         }
     }
 
+    /**
+     * Creates a copy-on-write fork owned by the caller. The fork points at the document that
+     * actually holds the content (never at another fork), so creating it copies no text, no chunks
+     * and no embeddings; it shares the source's last saved snapshot and its RAG index until
+     * either side is written.
+     */
+    @Override
+    @Transactional
+    public DocumentResponse fork(UUID documentId, UUID userId, String title) {
+        Document source = getDocumentOrThrow(documentId);
+        assertAccess(source, userId);
+        User owner = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + userId));
+        String forkTitle = title != null && !title.isBlank() ? title : "Copy of " + source.getTitle();
+        Document fork = documentRepository.save(Document.builder()
+                .owner(owner)
+                .title(forkTitle.length() > 500 ? forkTitle.substring(0, 500) : forkTitle)
+                .contentSourceId(source.resolveIndexDocumentId())
+                .forkedFromId(source.getId())
+                .currentRevision(0L)
+                .build());
+        documentRepository.refreshSearchVector(fork.getId());
+        log.info("Forked document {} as {} for user {}", documentId, fork.getId(), userId);
+        return documentMapper.toSummaryResponse(fork);
+    }
+
+    /**
+     * Called before a document's snapshot is overwritten or the document is deleted:
+     * forks still sharing it get their own copy of the snapshot and of its index.
+     */
+    @Override
+    @Transactional
+    public void detachForks(UUID sourceDocumentId) {
+        List<UUID> forkIds = documentRepository.findForkIdsSharing(sourceDocumentId);
+        if (forkIds.isEmpty()) {
+            return;
+        }
+        documentRepository.materializeForks(sourceDocumentId);
+        if (embeddingService != null) {
+            forkIds.forEach(forkId -> embeddingService.copyIndex(sourceDocumentId, forkId));
+        }
+        log.info("Detached {} forks from document {}", forkIds.size(), sourceDocumentId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UUID resolveIndexDocumentId(UUID documentId) {
+        return documentRepository.findIndexDocumentId(documentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Document not found: " + documentId));
+    }
+
     @Override
     @Transactional
     public CollaboratorResponse addCollaborator(UUID documentId, UUID ownerUserId,
@@ -134,6 +307,19 @@ public class DocumentServiceImpl implements DocumentService {
 
     // --- helpers ---
 
+    /**
+     * Reads until the buffer is full or the stream ends, so segments are uniformly sized.
+     */
+    private int fill(Reader reader, char[] buffer) throws IOException {
+        int filled = 0;
+        while (filled < buffer.length) {
+            int read = reader.read(buffer, filled, buffer.length - filled);
+            if (read < 0) break;
+            filled += read;
+        }
+        return filled;
+    }
+
     private Document getDocumentOrThrow(UUID documentId) {
         return documentRepository.findById(documentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Document not found: " + documentId));
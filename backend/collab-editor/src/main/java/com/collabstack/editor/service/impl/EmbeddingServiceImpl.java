@@ -1,127 +1,313 @@
 package com.collabstack.editor.service.impl;
 
+import com.collabstack.editor.chunking.SemanticChunker;
 import com.collabstack.editor.entity.DocumentChunk;
+import com.collabstack.editor.repository.DocumentChunkBatchRepository;
 import com.collabstack.editor.repository.DocumentChunkRepository;
+import com.collabstack.editor.repository.DocumentRepository;
+import com.collabstack.editor.repository.DocumentSnapshotRepository;
 import com.collabstack.editor.service.EmbeddingService;
+import com.collabstack.editor.util.Hashes;
+import com.collabstack.editor.vectorstore.DocumentScopedVectorStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EmbeddingServiceImpl implements EmbeddingService {
 
+    private static final int EMBED_PAGE_SIZE = 64;
+    private static final int INSERT_BATCH_SIZE = 500;
+
     private final DocumentChunkRepository chunkRepository;
+    private final DocumentChunkBatchRepository chunkBatchRepository;
+    private final DocumentRepository documentRepository;
+    private final DocumentSnapshotRepository snapshotRepository;
+    private final SemanticChunker chunker;
 
     // Optional — only available when app.rag.enabled=true
     @Autowired(required = false)
     private VectorStore vectorStore;
 
+    /**
+     * Incremental re-index: new chunks are matched against the stored ones by content hash.
+     * Unchanged chunks keep their row and vector (renumbered if they moved); only new text is
+     * embedded, and vectors of chunks that no longer occur are deleted by id. Chunk boundaries
+     * are content-defined (see {@link SemanticChunker}), so an edit only disturbs the chunks around it.
+     * Runs in one transaction with the vector writes; if embedding fails nothing is changed.
+     * Any change bumps the document's index_version, invalidating cached RAG lookups; the bump is
+     * the last statement, so the document row lock is held only until commit, never while embedding.
+     * Synchronous — callers go through {@link com.collabstack.editor.service.IndexingScheduler}.
+     */
     @Override
-    @Async
     @Transactional
     public void indexDocument(UUID documentId, String fullContent) {
+        indexDocument(documentId, fullContent, false);
+    }
+
+    /**
+     * A rebuild matches nothing: all stored chunks are replaced by new rows and vectors. The
+     * embedding cache is keyed by model, so after a model change every chunk really is re-embedded.
+     */
+    @Override
+    @Transactional
+    public void indexDocument(UUID documentId, String fullContent, boolean rebuild) {
         if (fullContent == null || fullContent.isBlank()) {
             log.debug("Skipping indexing for document {} — empty content", documentId);
             return;
         }
 
-        // Delete old chunks from JPA table
-        chunkRepository.deleteAllByDocumentId(documentId);
-
-        // Split into chunks
-        List<String> chunks = chunkText(fullContent, 800, 100);
-        log.info("Indexing document {} — {} chunks", documentId, chunks.size());
-
-        List<Document> aiDocuments = new ArrayList<>();
-
-        for (int i = 0; i < chunks.size(); i++) {
-            String chunkContent = chunks.get(i);
-
-            // Save chunk to JPA document_chunks table
-            DocumentChunk saved = chunkRepository.save(DocumentChunk.builder()
-                    .documentId(documentId)
-                    .chunkIndex(i)
-                    .content(chunkContent)
-                    .build());
-
-            // Build Spring AI document — use our JPA UUID as the vector store doc ID
-            if (vectorStore != null) {
-                Document aiDoc = new Document(
-                        saved.getId().toString(),
-                        chunkContent,
-                        Map.of("documentId", documentId.toString(), "chunkIndex", i)
-                );
-                aiDocuments.add(aiDoc);
-            }
+        IncrementalIndexer indexer = new IncrementalIndexer(documentId, rebuild);
+        // Chunks are produced lazily; text is only copied for chunks that need to be stored
+        for (Iterator<SemanticChunker.Chunk> it = chunker.chunks(fullContent); it.hasNext(); ) {
+            indexer.accept(it.next());
         }
+        indexer.finish();
+    }
 
-        // Add all to vector store (embeddings generated here)
-        if (vectorStore != null && !aiDocuments.isEmpty()) {
-            try {
-                vectorStore.add(aiDocuments);
-                log.info("Indexed {} chunks into vector store for document {}", aiDocuments.size(), documentId);
-            } catch (Exception e) {
-                log.error("Failed to add chunks to vector store for document {}: {}", documentId, e.getMessage());
-            }
-        } else if (vectorStore == null) {
-            log.warn("VectorStore not available (app.rag.enabled=false) — chunks saved to DB only");
+    /**
+     * Same incremental index, with the snapshot streamed from the database through the chunker's
+     * {@link SemanticChunker.Feeder}: heap use is bounded by one segment, one window and one batch
+     * of new chunks, however large the document.
+     */
+    @Override
+    @Transactional
+    public void indexStoredDocument(UUID documentId, boolean rebuild) {
+        if (!documentRepository.findIndexDocumentId(documentId).map(documentId::equals).orElse(false)) {
+            // Deleted, or a fork still sharing its source's content and index — nothing of its own to index
+            return;
         }
+        IncrementalIndexer indexer = new IncrementalIndexer(documentId, rebuild);
+        SemanticChunker.Feeder feeder = chunker.feeder(indexer::accept);
+        snapshotRepository.readSnapshot(documentId, feeder::append);
+        feeder.finish();
+        indexer.finish();
     }
 
+    /**
+     * Replaces a single chunk in place; the vector is upserted under the same id. A vector store
+     * failure propagates and rolls the chunk back with it.
+     */
     @Override
     @Async
     @Transactional
     public void reindexChunk(UUID documentId, int chunkIndex, String chunkContent) {
-        // For MVP: just re-run full document indexing is simpler
-        // A targeted single-chunk reindex would need to find and delete the specific vector by id
-        log.debug("reindexChunk called for doc {} chunk {} — delegating to full reindex is preferred",
-                documentId, chunkIndex);
+        DocumentChunk chunk = chunkRepository.findByDocumentIdAndChunkIndex(documentId, chunkIndex).orElse(null);
+        if (chunk == null) {
+            log.debug("reindexChunk: doc {} has no chunk {}", documentId, chunkIndex);
+            return;
+        }
+        String hash = Hashes.sha256Hex(chunkContent);
+        if (hash.equals(chunk.getContentHash())) {
+            return;
+        }
+        chunk.setContent(chunkContent);
+        chunk.setContentHash(hash);
+        DocumentChunk saved = chunkRepository.save(chunk);
+        // Its overlap with either neighbour is no longer known
+        chunkRepository.clearOverlaps(documentId, chunkIndex);
+        if (vectorStore != null) {
+            vectorStore.add(List.of(toAiDocument(saved)));
+        }
+        // After the embedding call, so the document row isn't locked while the provider is waited on
+        documentRepository.bumpIndexVersion(documentId);
     }
 
     @Override
     @Async
     @Transactional
     public void deleteDocumentChunks(UUID documentId) {
-        // Get chunk IDs before deleting from JPA
-        List<DocumentChunk> chunks = chunkRepository.findAllByDocumentIdOrderByChunkIndexAsc(documentId);
-        List<String> vectorIds = chunks.stream().map(c -> c.getId().toString()).toList();
+        // Get chunk IDs (not contents) before deleting from JPA
+        List<String> vectorIds = chunkRepository.findIdsByDocumentId(documentId).stream()
+                .map(UUID::toString)
+                .toList();
 
-        chunkRepository.deleteAllByDocumentId(documentId);
+        chunkRepository.deleteByDocumentId(documentId);
 
         if (vectorStore != null && !vectorIds.isEmpty()) {
             try {
-                vectorStore.delete(vectorIds);
+                deleteVectors(documentId, vectorIds);
                 log.info("Deleted {} vector chunks for document {}", vectorIds.size(), documentId);
             } catch (Exception e) {
                 log.error("Failed to delete vector chunks for document {}: {}", documentId, e.getMessage());
             }
         }
+        documentRepository.bumpIndexVersion(documentId);
+    }
+
+    /**
+     * Gives a diverging fork its own copy of the index it shared, in SQL and in the caller's
+     * transaction — no text leaves the database and nothing is re-embedded. A store outside the
+     * database gets the copied chunks added to it; their vectors come from the embedding cache.
+     */
+    @Override
+    @Transactional
+    public void copyIndex(UUID sourceDocumentId, UUID targetDocumentId) {
+        int copied;
+        if (vectorStore instanceof DocumentScopedVectorStore) {
+            copied = chunkRepository.copyChunks(sourceDocumentId, targetDocumentId);
+            addStoredChunks(targetDocumentId);
+        } else {
+            copied = vectorStore != null
+                    ? chunkRepository.copyChunksWithVectors(sourceDocumentId, targetDocumentId)
+                    : chunkRepository.copyChunks(sourceDocumentId, targetDocumentId);
+        }
+        documentRepository.bumpIndexVersion(targetDocumentId);
+        log.info("Copied {} indexed chunks from document {} to fork {}", copied, sourceDocumentId, targetDocumentId);
+    }
+
+    private int addStoredChunks(UUID documentId) {
+        int added = 0;
+        Slice<DocumentChunk> page = chunkRepository.findByDocumentIdOrderByChunkIndexAsc(
+                documentId, PageRequest.of(0, EMBED_PAGE_SIZE));
+        while (true) {
+            List<Document> aiDocuments = page.getContent().stream().map(this::toAiDocument).toList();
+            if (!aiDocuments.isEmpty()) {
+                vectorStore.add(aiDocuments);
+                added += aiDocuments.size();
+            }
+            if (!page.hasNext()) break;
+            page = chunkRepository.findByDocumentIdOrderByChunkIndexAsc(documentId, page.nextPageable());
+        }
+        return added;
+    }
+
+    private void deleteVectors(UUID documentId, List<String> ids) {
+        if (vectorStore instanceof DocumentScopedVectorStore scoped) {
+            scoped.delete(documentId, ids);
+        } else {
+            vectorStore.delete(ids);
+        }
+    }
+
+    private void updateVectorChunkIndexes(UUID documentId, List<DocumentChunk> moved) {
+        if (vectorStore instanceof DocumentScopedVectorStore scoped) {
+            scoped.updateChunkIndexes(documentId, moved.stream()
+                    .collect(Collectors.toMap(c -> c.getId().toString(), DocumentChunk::getChunkIndex)));
+        } else {
+            chunkBatchRepository.updateVectorChunkIndexes(moved);
+        }
+    }
+
+    private Document toAiDocument(DocumentChunk chunk) {
+        return new Document(
+                chunk.getId().toString(),
+                chunk.getContent(),
+                Map.of("documentId", chunk.getDocumentId().toString(), "chunkIndex", chunk.getChunkIndex())
+        );
     }
 
     /**
-     * Splits text into chunks of `size` characters with `overlap` character overlap.
+     * Matches chunks, as they are produced, against the stored ones by content hash (ids and
+     * hashes only — contents stay in the database; duplicates are reused one each). New chunks
+     * are inserted and embedded INSERT_BATCH_SIZE at a time, so a first index of a large document
+     * holds one batch of chunk text, not all of it. Unchanged chunks that moved, or whose overlap with
+     * the previous chunk changed, are updated and unmatched ones deleted in {@link #finish}. A vector
+     * store failure propagates, rolling the whole run back (a hash must never be stored without its
+     * vector) and telling the caller, e.g. the {@code IndexingScheduler}, to retry.
      */
-    List<String> chunkText(String text, int size, int overlap) {
-        List<String> chunks = new ArrayList<>();
-        int start = 0;
-        while (start < text.length()) {
-            int end = Math.min(start + size, text.length());
-            chunks.add(text.substring(start, end));
-            if (end == text.length()) break;
-            start += (size - overlap);
+    private class IncrementalIndexer {
+
+        private final UUID documentId;
+        private final Map<String, Deque<DocumentChunkRepository.ChunkRef>> existingByHash = new HashMap<>();
+        private final List<DocumentChunk> created = new ArrayList<>(INSERT_BATCH_SIZE);
+        private final List<DocumentChunk> moved = new ArrayList<>();
+        private int chunkCount;
+        private int createdCount;
+
+        IncrementalIndexer(UUID documentId, boolean rebuild) {
+            this.documentId = documentId;
+            for (DocumentChunkRepository.ChunkRef chunk : chunkRepository.findRefsByDocumentId(documentId)) {
+                // Under a distinct key per chunk when rebuilding, so no new chunk matches and all of them go stale
+                String key = rebuild ? chunk.getId().toString() : chunk.getContentHash();
+                existingByHash.computeIfAbsent(key, h -> new ArrayDeque<>()).add(chunk);
+            }
+        }
+
+        void accept(SemanticChunker.Chunk chunk) {
+            chunkCount++;
+            int i = chunk.index();
+            String hash = Hashes.sha256Hex(chunk.text());
+            Deque<DocumentChunkRepository.ChunkRef> candidates = existingByHash.get(hash);
+            DocumentChunkRepository.ChunkRef kept = candidates != null ? candidates.poll() : null;
+            if (kept == null) {
+                created.add(DocumentChunk.builder()
+                        .id(UUID.randomUUID())
+                        .documentId(documentId)
+                        .chunkIndex(i)
+                        .content(chunk.content())
+                        .contentHash(hash)
+                        .overlapChars(chunk.overlap())
+                        .build());
+                if (created.size() >= INSERT_BATCH_SIZE) {
+                    flushCreated();
+                }
+            } else if (kept.getChunkIndex() != i || !Integer.valueOf(chunk.overlap()).equals(kept.getOverlapChars())) {
+                moved.add(DocumentChunk.builder().id(kept.getId()).documentId(documentId).chunkIndex(i)
+                        .overlapChars(chunk.overlap()).build());
+            }
+        }
+
+        void finish() {
+            flushCreated();
+            List<UUID> staleIds = existingByHash.values().stream()
+                    .flatMap(Deque::stream)
+                    .map(DocumentChunkRepository.ChunkRef::getId)
+                    .toList();
+
+            // Set-based writes; (document_id, chunk_index) uniqueness is deferred to commit,
+            // so statement order doesn't matter
+            if (!staleIds.isEmpty()) {
+                chunkRepository.deleteByIdIn(staleIds);
+            }
+            chunkBatchRepository.updateChunkIndexes(moved);
+            log.info("Indexing document {} — {} chunks: {} new, {} moved, {} removed, {} unchanged",
+                    documentId, chunkCount, createdCount, moved.size(), staleIds.size(),
+                    chunkCount - createdCount - moved.size());
+
+            if (vectorStore == null) {
+                log.warn("VectorStore not available (app.rag.enabled=false) — chunks saved to DB only");
+            } else {
+                if (!staleIds.isEmpty()) {
+                    deleteVectors(documentId, staleIds.stream().map(UUID::toString).toList());
+                }
+                updateVectorChunkIndexes(documentId, moved);
+            }
+            // Last, so the document row is only locked from here to commit, not across embedding calls
+            if (createdCount > 0 || !moved.isEmpty() || !staleIds.isEmpty()) {
+                documentRepository.bumpIndexVersion(documentId);
+            }
+        }
+
+        private void flushCreated() {
+            if (created.isEmpty()) {
+                return;
+            }
+            chunkBatchRepository.insertAll(created);
+            if (vectorStore != null) {
+                vectorStore.add(created.stream().map(EmbeddingServiceImpl.this::toAiDocument).toList());
+            }
+            createdCount += created.size();
+            created.clear();
         }
-        return chunks;
     }
 }
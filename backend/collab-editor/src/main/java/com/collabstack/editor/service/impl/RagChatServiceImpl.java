@@ -1,77 +1,246 @@
 package com.collabstack.editor.service.impl;
 
+import com.collabstack.editor.chunking.ContextPacker;
 import com.collabstack.editor.dto.request.ChatRequest;
 import com.collabstack.editor.dto.response.ChatResponse;
+import com.collabstack.editor.dto.response.ChatStreamEvent;
+import com.collabstack.editor.entity.DocumentChunk;
+import com.collabstack.editor.exception.ProviderUnavailableException;
+import com.collabstack.editor.repository.DocumentChunkRepository;
+import com.collabstack.editor.repository.DocumentRepository;
+import com.collabstack.editor.resilience.ProviderBulkheads;
 import com.collabstack.editor.service.DocumentService;
+import com.collabstack.editor.service.HybridRetriever;
 import com.collabstack.editor.service.RagChatService;
-import lombok.RequiredArgsConstructor;
+import com.collabstack.editor.service.RagQueryCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class RagChatServiceImpl implements RagChatService {
 
+    private static final String PROVIDER_ERROR = "AI service is unavailable. Please check your OPENAI_API_KEY.";
+    private static final String PROVIDER_BUSY = "AI service is busy or not responding. Please try again shortly.";
+
     private final DocumentService documentService;
     private final ChatClient chatClient;
+    private final DocumentRepository documentRepository;
+    private final DocumentChunkRepository chunkRepository;
+    private final RagQueryCache queryCache;
+    private final HybridRetriever hybridRetriever;
+    private final ContextPacker contextPacker;
+    private final ProviderBulkheads providerBulkheads;
+
+    // Prompt context size per question, before (chunks joined verbatim) and after packing
+    private final DistributionSummary retrievedTokens;
+    private final DistributionSummary packedTokens;
+
+    public RagChatServiceImpl(DocumentService documentService, ChatClient chatClient,
+                              DocumentRepository documentRepository, DocumentChunkRepository chunkRepository,
+                              RagQueryCache queryCache, HybridRetriever hybridRetriever,
+                              ContextPacker contextPacker, ProviderBulkheads providerBulkheads,
+                              MeterRegistry meterRegistry) {
+        this.documentService = documentService;
+        this.chatClient = chatClient;
+        this.documentRepository = documentRepository;
+        this.chunkRepository = chunkRepository;
+        this.queryCache = queryCache;
+        this.hybridRetriever = hybridRetriever;
+        this.contextPacker = contextPacker;
+        this.providerBulkheads = providerBulkheads;
+        this.retrievedTokens = contextTokens(meterRegistry, "retrieved");
+        this.packedTokens = contextTokens(meterRegistry, "packed");
+    }
 
-    // Optional — only available when app.rag.enabled=true
-    @Autowired(required = false)
-    private VectorStore vectorStore;
+    /**
+     * Outcome of steps 1–2: either the retrieved chunks (or a cached answer) or a message to answer with instead.
+     */
+    private record Retrieval(RagQueryCache.Key key, List<Document> documents, ChatResponse cachedAnswer,
+                             String message) {
+        static Retrieval of(RagQueryCache.Key key, List<Document> documents) {
+            return new Retrieval(key, documents, null, null);
+        }
+
+        static Retrieval answered(ChatResponse cachedAnswer) {
+            return new Retrieval(null, Collections.emptyList(), cachedAnswer, null);
+        }
+
+        static Retrieval failed(String message) {
+            return new Retrieval(null, Collections.emptyList(), null, message);
+        }
+    }
 
     @Override
     public ChatResponse chat(UUID documentId, UUID userId, ChatRequest request) {
         // 1. Verify user has access (throws UnauthorizedException if not)
         documentService.findById(documentId, userId);
 
-        if (vectorStore == null) {
-            return new ChatResponse(
-                    "RAG is not enabled on this server. Set app.rag.enabled=true and ensure pgvector is installed.",
-                    Collections.emptyList()
-            );
+        Retrieval retrieval = retrieve(documentId, request.question());
+        if (retrieval.message() != null) {
+            return new ChatResponse(retrieval.message(), Collections.emptyList());
         }
+        if (retrieval.cachedAnswer() != null) {
+            return retrieval.cachedAnswer();
+        }
+        List<Document> relevantDocs = retrieval.documents();
 
-        // 2. Retrieve relevant chunks via similarity search filtered by documentId
-        List<Document> relevantDocs;
+        // 5. Call LLM (on the chat bulkhead: bounded concurrency, deadline, circuit breaker)
+        String systemPrompt = systemPrompt(relevantDocs);
+        String answer;
         try {
-            relevantDocs = vectorStore.similaritySearch(
-                    SearchRequest.builder()
-                            .query(request.question())
-                            .topK(6)
-                            .filterExpression("documentId == '" + documentId.toString() + "'")
-                            .build()
-            );
+            answer = providerBulkheads.chat().call(() -> chatClient.prompt()
+                    .system(systemPrompt)
+                    .user(request.question())
+                    .call()
+                    .content());
+        } catch (ProviderUnavailableException e) {
+            log.warn("LLM call refused or timed out for document {}: {}", documentId, e.getMessage());
+            return new ChatResponse(PROVIDER_BUSY, Collections.emptyList());
         } catch (Exception e) {
-            log.error("Vector similarity search failed for document {}: {}", documentId, e.getMessage());
-            return new ChatResponse("Failed to retrieve context from document. Please try again.",
-                    Collections.emptyList());
+            log.error("LLM call failed for document {}: {}", documentId, e.getMessage());
+            return new ChatResponse(PROVIDER_ERROR, Collections.emptyList());
         }
 
+        log.info("RAG chat answered question for document {} using {} chunks", documentId, relevantDocs.size());
+        ChatResponse response = new ChatResponse(answer, snippets(relevantDocs));
+        queryCache.putAnswer(retrieval.key(), response);
+        return response;
+    }
+
+    /**
+     * Same pipeline as {@link #chat}, but sources are emitted as soon as retrieval finishes and the
+     * answer follows token by token. Retrieval (embedding the question, vector search) runs on the
+     * bounded-elastic scheduler, so no request thread is held while waiting for either provider.
+     */
+    @Override
+    public Flux<ChatStreamEvent> chatStream(UUID documentId, UUID userId, ChatRequest request) {
+        // 1. Verify access up front so denials are ordinary error responses, not stream events
+        documentService.findById(documentId, userId);
+
+        return Mono.fromCallable(() -> retrieve(documentId, request.question()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(retrieval -> {
+                    if (retrieval.message() != null) {
+                        return Flux.just(ChatStreamEvent.answer(retrieval.message()), ChatStreamEvent.done());
+                    }
+                    ChatResponse cached = retrieval.cachedAnswer();
+                    if (cached != null) {
+                        return Flux.just(ChatStreamEvent.sources(cached.sourceSnippets()),
+                                ChatStreamEvent.token(cached.answer()), ChatStreamEvent.done());
+                    }
+                    List<Document> relevantDocs = retrieval.documents();
+                    List<String> snippets = snippets(relevantDocs);
+                    StringBuilder answer = new StringBuilder();
+                    String systemPrompt = systemPrompt(relevantDocs);
+                    Flux<ChatStreamEvent> tokens = providerBulkheads.chat().stream(() -> chatClient.prompt()
+                                    .system(systemPrompt)
+                                    .user(request.question())
+                                    .stream()
+                                    .content())
+                            .filter(text -> !text.isEmpty())
+                            .doOnNext(answer::append)
+                            .map(ChatStreamEvent::token)
+                            .doOnComplete(() -> {
+                                // Only complete answers are cached; a cancelled stream never completes
+                                queryCache.putAnswer(retrieval.key(), new ChatResponse(answer.toString(), snippets));
+                                log.info("RAG chat streamed answer for document {} using {} chunks",
+                                        documentId, relevantDocs.size());
+                            })
+                            .onErrorResume(e -> {
+                                log.error("LLM stream failed for document {}: {}", documentId, e.getMessage());
+                                return Mono.just(ChatStreamEvent.error(
+                                        e instanceof ProviderUnavailableException ? PROVIDER_BUSY : PROVIDER_ERROR));
+                            });
+                    return Flux.concat(
+                            Mono.just(ChatStreamEvent.sources(snippets)),
+                            tokens,
+                            Mono.just(ChatStreamEvent.done()));
+                })
+                .doOnCancel(() -> log.debug("RAG chat stream for document {} cancelled by client", documentId));
+    }
+
+    private Retrieval retrieve(UUID documentId, String question) {
+        // Forks that haven't diverged search their source's index
+        UUID indexDocumentId = documentService.resolveIndexDocumentId(documentId);
+
+        // Repeated questions against an unchanged index are served from cache
+        RagQueryCache.Key key = RagQueryCache.Key.of(indexDocumentId,
+                documentRepository.findIndexVersion(indexDocumentId).orElse(0L), question);
+        ChatResponse cachedAnswer = queryCache.answer(key);
+        if (cachedAnswer != null) {
+            return Retrieval.answered(cachedAnswer);
+        }
+        List<Document> cachedDocs = loadCachedChunks(key);
+        if (cachedDocs != null) {
+            return Retrieval.of(key, cachedDocs);
+        }
+
+        // 2. Retrieve relevant chunks: full-text and vector search fused (full-text only without a vector store)
+        List<Document> relevantDocs = hybridRetriever.retrieve(indexDocumentId, question);
+
         if (relevantDocs.isEmpty()) {
-            return new ChatResponse(
-                    "No indexed content found for this document. Use the /index endpoint to index it first.",
-                    Collections.emptyList()
-            );
+            return Retrieval.failed(
+                    "No indexed content found for this document. Use the /index endpoint to index it first.");
+        }
+        queryCache.putChunkIds(key, relevantDocs.stream().map(d -> UUID.fromString(d.getId())).toList());
+        return Retrieval.of(key, relevantDocs);
+    }
+
+    /**
+     * The cached top-K chunks in rank order, or null on a miss. A chunk that disappeared
+     * since (a re-index committed after the version was read) also counts as a miss.
+     */
+    private List<Document> loadCachedChunks(RagQueryCache.Key key) {
+        List<UUID> ids = queryCache.chunkIds(key);
+        if (ids == null) {
+            return null;
+        }
+        Map<UUID, DocumentChunk> byId = chunkRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(DocumentChunk::getId, Function.identity()));
+        List<Document> documents = ids.stream().map(byId::get).filter(Objects::nonNull)
+                .map(RagChatServiceImpl::toAiDocument)
+                .toList();
+        return documents.size() == ids.size() ? documents : null;
+    }
+
+    private static Document toAiDocument(DocumentChunk chunk) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("documentId", chunk.getDocumentId().toString());
+        metadata.put("chunkIndex", chunk.getChunkIndex());
+        if (chunk.getOverlapChars() != null) {
+            metadata.put("overlapChars", chunk.getOverlapChars());
         }
+        return new Document(chunk.getId().toString(), chunk.getContent(), metadata);
+    }
 
-        // 3. Build context string
-        String context = relevantDocs.stream()
-                .map(Document::getText)
-                .collect(Collectors.joining("\n\n---\n\n"));
+    private String systemPrompt(List<Document> relevantDocs) {
+        // 3. Build context string: overlapping neighbours merged, duplicates dropped, within the token budget
+        ContextPacker.Packed packed = contextPacker.pack(relevantDocs);
+        retrievedTokens.record(packed.retrievedTokens());
+        packedTokens.record(packed.packedTokens());
+        log.debug("Packed {} of {} chunks into {} passages: {} -> {} tokens", packed.chunks(), relevantDocs.size(),
+                packed.passages(), packed.retrievedTokens(), packed.packedTokens());
+        String context = packed.context();
 
         // 4. System prompt
-        String systemPrompt = """
+        return """
                 You are a helpful assistant answering questions about a document.
                 Answer ONLY using the provided document context below.
                 If the answer is not in the context, say "I couldn't find that in the document."
@@ -79,27 +248,18 @@ public class RagChatServiceImpl implements RagChatService {
 
                 DOCUMENT CONTEXT:
                 """ + context;
+    }
 
-        // 5. Call LLM
-        String answer;
-        try {
-            answer = chatClient.prompt()
-                    .system(systemPrompt)
-                    .user(request.question())
-                    .call()
-                    .content();
-        } catch (Exception e) {
-            log.error("LLM call failed for document {}: {}", documentId, e.getMessage());
-            return new ChatResponse("AI service is unavailable. Please check your OPENAI_API_KEY.",
-                    Collections.emptyList());
-        }
+    private static DistributionSummary contextTokens(MeterRegistry meterRegistry, String stage) {
+        return DistributionSummary.builder("rag.context.tokens")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
 
+    private List<String> snippets(List<Document> relevantDocs) {
         // 6. Extract source snippets (first 150 chars of each retrieved chunk)
-        List<String> snippets = relevantDocs.stream()
+        return relevantDocs.stream()
                 .map(d -> d.getText().substring(0, Math.min(150, d.getText().length())) + "...")
                 .toList();
-
-        log.info("RAG chat answered question for document {} using {} chunks", documentId, relevantDocs.size());
-        return new ChatResponse(answer, snippets);
     }
 }
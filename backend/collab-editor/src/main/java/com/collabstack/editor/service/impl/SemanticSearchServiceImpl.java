@@ -0,0 +1,161 @@
+package com.collabstack.editor.service.impl;
+
+import com.collabstack.editor.dto.request.SemanticSearchRequest;
+import com.collabstack.editor.dto.response.SemanticSearchHit;
+import com.collabstack.editor.dto.response.SemanticSearchResponse;
+import com.collabstack.editor.exception.BadRequestException;
+import com.collabstack.editor.repository.DocumentRepository;
+import com.collabstack.editor.repository.DocumentRepository.AccessibleDocument;
+import com.collabstack.editor.service.SemanticSearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SemanticSearchServiceImpl implements SemanticSearchService {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 50;
+    // Similarity ranks are only meaningful near the top; paging stops here
+    private static final int MAX_RESULTS = 200;
+
+    private final DocumentRepository documentRepository;
+
+    @Autowired(required = false)
+    private VectorStore vectorStore;
+
+    private record Cursor(int offset, double score, String chunkId) {}
+
+    /**
+     * The accessible documents are resolved first and handed to the vector store as a documentId
+     * filter, so access control is part of the vector query (pgvector: {@code document_id IN (...)}
+     * on the indexed column, exact for small sets) rather than a filter over someone else's top-K.
+     * The in-process HNSW store only searches a bounded number of documents at once; beyond that
+     * the request is refused rather than loading every accessible graph.
+     * <p>
+     * Each page re-runs the search to the depth it needs (at most {@link #MAX_RESULTS}) and continues
+     * after the cursor's (score, chunk id), so hits do not repeat across pages when the index changes.
+     */
+    @Override
+    public SemanticSearchResponse search(UUID userId, SemanticSearchRequest request) {
+        if (vectorStore == null) {
+            throw new BadRequestException("Semantic search is not enabled (app.rag.enabled=false)");
+        }
+        int pageSize = Math.max(1, Math.min(request.limit() != null ? request.limit() : DEFAULT_LIMIT, MAX_LIMIT));
+        Cursor after = decodeCursor(request.cursor());
+        int offset = after != null ? after.offset() : 0;
+        if (offset >= MAX_RESULTS) {
+            return new SemanticSearchResponse(List.of(), null);
+        }
+
+        // Chunks are stored under the index document: a fork's source, which the user may not see directly
+        Map<String, AccessibleDocument> byIndexDocument = new HashMap<>();
+        for (AccessibleDocument document : documentRepository.findAccessible(userId)) {
+            byIndexDocument.merge(document.getIndexDocumentId().toString(), document,
+                    SemanticSearchServiceImpl::preferred);
+        }
+        if (byIndexDocument.isEmpty()) {
+            return new SemanticSearchResponse(List.of(), null);
+        }
+
+        int depth = Math.min(MAX_RESULTS, offset + pageSize + 1);
+        List<Document> found;
+        try {
+            found = new ArrayList<>(vectorStore.similaritySearch(SearchRequest.builder()
+                    .query(request.query())
+                    .topK(depth)
+                    .filterExpression(new FilterExpressionBuilder()
+                            .in("documentId", byIndexDocument.keySet().toArray())
+                            .build())
+                    .build()));
+        } catch (UnsupportedOperationException e) {
+            throw new BadRequestException("Semantic search across " + byIndexDocument.size()
+                    + " documents is not supported by this vector store: " + e.getMessage());
+        }
+        found.sort(Comparator.comparing(Document::getScore, Comparator.reverseOrder())
+                .thenComparing(Document::getId));
+
+        List<SemanticSearchHit> hits = new ArrayList<>(pageSize);
+        boolean more = false;
+        for (Document chunk : found) {
+            if (after != null && !isAfter(chunk, after)) {
+                continue;
+            }
+            if (hits.size() == pageSize) {
+                more = true;
+                break;
+            }
+            AccessibleDocument document = byIndexDocument.get(String.valueOf(chunk.getMetadata().get("documentId")));
+            if (document == null) {
+                continue;
+            }
+            hits.add(new SemanticSearchHit(document.getId(), document.getTitle(), UUID.fromString(chunk.getId()),
+                    chunkIndex(chunk), chunk.getText(), chunk.getScore()));
+        }
+
+        String nextCursor = null;
+        if (more && offset + hits.size() < MAX_RESULTS) {
+            SemanticSearchHit last = hits.get(hits.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    ((offset + hits.size()) + ":" + last.score() + ":" + last.chunkId()).getBytes(StandardCharsets.UTF_8));
+        }
+        log.debug("Semantic search for user {} over {} indexed documents returned {} hits",
+                userId, byIndexDocument.size(), hits.size());
+        return new SemanticSearchResponse(hits, nextCursor);
+    }
+
+    /**
+     * With both a source and its fork accessible, hits are reported on the source.
+     */
+    private static AccessibleDocument preferred(AccessibleDocument a, AccessibleDocument b) {
+        if (a.getId().equals(a.getIndexDocumentId())) {
+            return a;
+        }
+        if (b.getId().equals(b.getIndexDocumentId())) {
+            return b;
+        }
+        return a.getId().compareTo(b.getId()) <= 0 ? a : b;
+    }
+
+    private static boolean isAfter(Document chunk, Cursor cursor) {
+        int byScore = Double.compare(chunk.getScore(), cursor.score());
+        return byScore < 0 || (byScore == 0 && chunk.getId().compareTo(cursor.chunkId()) > 0);
+    }
+
+    private static Integer chunkIndex(Document chunk) {
+        Object index = chunk.getMetadata().get("chunkIndex");
+        if (index instanceof Number number) {
+            return number.intValue();
+        }
+        return index != null ? Integer.valueOf(index.toString()) : null;
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+            return new Cursor(Integer.parseInt(parts[0]), Double.parseDouble(parts[1]),
+                    UUID.fromString(parts[2]).toString());
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new BadRequestException("Invalid search cursor");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.collabstack.editor.util;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public final class Hashes {
+
+    private Hashes() {
+    }
+
+    /**
+     * Lower-case hex SHA-256 of the UTF-8 bytes of {@code text}.
+     */
+    public static String sha256Hex(String text) {
+        return HexFormat.of().formatHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Same as {@link #sha256Hex(String)}, without first copying a view (e.g. a chunk) into a String.
+     */
+    public static String sha256Hex(CharSequence text) {
+        MessageDigest digest = sha256();
+        digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(text)));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
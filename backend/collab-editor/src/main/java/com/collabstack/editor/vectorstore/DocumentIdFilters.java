@@ -0,0 +1,62 @@
+package com.collabstack.editor.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the documents a filter selects, for filters made only of {@code documentId == '...'},
+ * {@code documentId IN [...]} and OR-combinations of them — the only shapes retrieval uses.
+ */
+final class DocumentIdFilters {
+
+    static final String DOCUMENT_ID = "documentId";
+
+    private DocumentIdFilters() {
+    }
+
+    /**
+     * The selected document ids, or null if the filter has any other shape.
+     */
+    static Set<UUID> documentIds(Filter.Expression expression) {
+        return switch (expression.type()) {
+            case EQ -> {
+                Object value = documentIdValue(expression);
+                yield value != null ? Set.of(UUID.fromString(value.toString())) : null;
+            }
+            case IN -> {
+                if (!(documentIdValue(expression) instanceof Collection<?> values)) {
+                    yield null;
+                }
+                yield values.stream().map(v -> UUID.fromString(v.toString())).collect(Collectors.toSet());
+            }
+            case OR -> {
+                if (!(expression.left() instanceof Filter.Expression left)
+                        || !(expression.right() instanceof Filter.Expression right)) {
+                    yield null;
+                }
+                Set<UUID> leftIds = documentIds(left);
+                Set<UUID> rightIds = documentIds(right);
+                if (leftIds == null || rightIds == null) {
+                    yield null;
+                }
+                Set<UUID> ids = new HashSet<>(leftIds);
+                ids.addAll(rightIds);
+                yield ids;
+            }
+            default -> null;
+        };
+    }
+
+    private static Object documentIdValue(Filter.Expression expression) {
+        if (expression.left() instanceof Filter.Key key && DOCUMENT_ID.equals(key.key())
+                && expression.right() instanceof Filter.Value value) {
+            return value.value();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,458 @@
+package com.collabstack.editor.vectorstore;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+/**
+ * PgVectorStore front for searches scoped to documents, which is every search retrieval makes.
+ * <ul>
+ *   <li>vector_store carries a generated {@code document_id} column (from the documentId metadata)
+ *       with a btree index, so filtering never goes through the JSON metadata.</li>
+ *   <li>Documents with at most {@code exactSearchMaxVectors} vectors are searched exactly: their rows
+ *       come from the btree and are sorted by distance, so latency depends on the document's size,
+ *       not on the size of the global HNSW index (which would have to be scanned far past topK to
+ *       find enough rows of a small document).</li>
+ *   <li>Larger documents use the HNSW index. With a quantized index ({@link VectorQuantization})
+ *       {@code rescoreFactor × topK} candidates are re-ranked by exact float32 cosine distance; the
+ *       table keeps float32 vectors for that, what shrinks is the index that has to stay in memory.</li>
+ *   <li>A filtered HNSW scan applies the document filter after the index returns its candidates.
+ *       With pgvector 0.8+ the scan is iterative ({@code hnsw.iterative_scan}): it keeps going until
+ *       enough rows pass the filter, up to {@code hnsw.max_scan_tuples} sized from the document's
+ *       share of the table. On older versions ef_search is raised by that share instead; where that
+ *       would exceed pgvector's maximum of 1000, the search falls back to the exact path, whose
+ *       latency grows with the document rather than losing recall.</li>
+ * </ul>
+ * Vector rows hold no text: it is stored once, in document_chunks under the same id, and joined
+ * back into search results. Writes are upserts of id, metadata and vector; deletes go to the
+ * wrapped store, which also owns the table's schema.
+ */
+@Slf4j
+public class DocumentPgVectorStore implements VectorStore {
+
+    // pgvector's default hnsw.ef_search, and its maximum
+    private static final int DEFAULT_EF_SEARCH = 40;
+    private static final int MAX_EF_SEARCH = 1000;
+    // pgvector's default hnsw.max_scan_tuples, and the most an iterative scan is allowed here
+    private static final long DEFAULT_MAX_SCAN_TUPLES = 20_000;
+    private static final long MAX_SCAN_TUPLES = 1_000_000;
+
+    private static final String COUNT_SQL =
+            "SELECT count(*) FROM vector_store WHERE document_id = ANY(CAST(:documentIds AS uuid[]))";
+
+    private static final String DOCUMENT_FILTER = "WHERE document_id = ANY(CAST(:documentIds AS uuid[]))";
+
+    // Text is joined from document_chunks for the final rows only (primary key lookups)
+    private static final String ANN_SQL = """
+            SELECT r.id, coalesce(dc.content, r.content, '') AS content, r.metadata, r.score
+            FROM (
+                SELECT c.id, c.content, c.metadata, 1 - (c.embedding <=> CAST(:query AS vector)) AS score
+                FROM (
+                    SELECT id, content, metadata, embedding
+                    FROM vector_store
+                    /*filter*/
+                    ORDER BY /*distance*/
+                    LIMIT :candidates
+                ) c
+                ORDER BY c.embedding <=> CAST(:query AS vector)
+                LIMIT :topK
+            ) r
+            LEFT JOIN document_chunks dc ON dc.id = r.id
+            ORDER BY r.score DESC
+            """;
+
+    // "+ 0" keeps the planner from serving the ORDER BY with the HNSW index: rows come from the btree
+    private static final String EXACT_SQL = """
+            SELECT r.id, coalesce(dc.content, r.content, '') AS content, r.metadata, r.score
+            FROM (
+                SELECT id, content, metadata, 1 - (embedding <=> CAST(:query AS vector)) AS score
+                FROM vector_store
+                WHERE document_id = ANY(CAST(:documentIds AS uuid[]))
+                ORDER BY (embedding <=> CAST(:query AS vector)) + 0
+                LIMIT :topK
+            ) r
+            LEFT JOIN document_chunks dc ON dc.id = r.id
+            ORDER BY r.score DESC
+            """;
+
+    // Rows carry no text: it lives in document_chunks under the same id
+    private static final String UPSERT_SQL = """
+            INSERT INTO vector_store (id, content, metadata, embedding)
+            VALUES (:id, NULL, CAST(:metadata AS json), CAST(:embedding AS vector))
+            ON CONFLICT (id) DO UPDATE
+            SET content = NULL, metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding
+            """;
+
+    private static final int UPSERT_BATCH_SIZE = 500;
+
+    private final PgVectorStore delegate;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EmbeddingModel documentEmbeddingModel;
+    private final EmbeddingModel queryEmbeddingModel;
+    private final ObjectMapper objectMapper;
+    private final VectorQuantization quantization;
+    private final int dimensions;
+    private final int rescoreFactor;
+    private final int exactSearchMaxVectors;
+    private final BatchingStrategy batchingStrategy = new TokenCountBatchingStrategy();
+    // pgvector 0.8+, detected by initializeSchema
+    private boolean iterativeScan;
+
+    public record ModeResult(String mode, double recall, double meanLatencyMs) {}
+
+    public record ComparisonReport(String quantization, int samples, int topK, long vectors,
+                                   long indexBytes, List<ModeResult> results) {}
+
+    /**
+     * @param documentEmbeddingModel embeds chunks on {@link #add}
+     * @param queryEmbeddingModel    embeds search queries
+     */
+    public DocumentPgVectorStore(PgVectorStore delegate, NamedParameterJdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate, EmbeddingModel documentEmbeddingModel,
+                                 EmbeddingModel queryEmbeddingModel, ObjectMapper objectMapper,
+                                 VectorQuantization quantization, int dimensions, int rescoreFactor,
+                                 int exactSearchMaxVectors) {
+        this.delegate = delegate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.documentEmbeddingModel = documentEmbeddingModel;
+        this.queryEmbeddingModel = queryEmbeddingModel;
+        this.objectMapper = objectMapper;
+        this.quantization = quantization;
+        this.dimensions = dimensions;
+        this.rescoreFactor = rescoreFactor;
+        this.exactSearchMaxVectors = exactSearchMaxVectors;
+    }
+
+    /**
+     * Adds the document_id column and index and, in a quantized mode, creates the quantized index
+     * and drops PgVectorStore's float32 one, which it replaces. On an existing table each of these
+     * rewrites or scans it once.
+     */
+    public void initializeSchema() {
+        delegate.afterPropertiesSet();
+        var jdbc = jdbcTemplate.getJdbcTemplate();
+        jdbc.execute("ALTER TABLE vector_store ADD COLUMN IF NOT EXISTS document_id UUID " +
+                "GENERATED ALWAYS AS (CAST(metadata ->> 'documentId' AS uuid)) STORED");
+        jdbc.execute("CREATE INDEX IF NOT EXISTS vector_store_document_id_idx ON vector_store (document_id)");
+        if (quantization.isQuantized()) {
+            jdbc.execute("CREATE INDEX IF NOT EXISTS " + quantization.indexName()
+                    + " ON vector_store " + quantization.indexMethod(dimensions));
+            jdbc.execute("DROP INDEX IF EXISTS " + PgVectorStore.DEFAULT_VECTOR_INDEX_NAME);
+            log.info("Vector search uses the {} index with float32 rescoring of {}x top-k candidates",
+                    quantization.indexName(), rescoreFactor);
+        }
+        String version = jdbc.queryForObject("SELECT extversion FROM pg_extension WHERE extname = 'vector'", String.class);
+        iterativeScan = supportsIterativeScan(version);
+        log.info("pgvector {}: filtered HNSW searches {}", version,
+                iterativeScan ? "use iterative scans" : "scale ef_search to the filtered share of rows");
+    }
+
+    private static boolean supportsIterativeScan(String version) {
+        String[] parts = version != null ? version.split("\\.") : new String[0];
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return major > 0 || minor >= 8;
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "DocumentPgVectorStore";
+    }
+
+    /**
+     * Embeds and upserts vectors for chunks whose text is stored in document_chunks under the
+     * same id, so the text is not written a second time; searches join it back.
+     */
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = documentEmbeddingModel.embed(documents, EmbeddingOptionsBuilder.builder().build(),
+                batchingStrategy);
+        List<MapSqlParameterSource> rows = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            rows.add(new MapSqlParameterSource()
+                    .addValue("id", UUID.fromString(document.getId()))
+                    .addValue("metadata", toJson(document.getMetadata()))
+                    .addValue("embedding", toLiteral(embeddings.get(i))));
+        }
+        for (int from = 0; from < rows.size(); from += UPSERT_BATCH_SIZE) {
+            List<MapSqlParameterSource> batch = rows.subList(from, Math.min(from + UPSERT_BATCH_SIZE, rows.size()));
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch.toArray(MapSqlParameterSource[]::new));
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (!request.hasFilterExpression()) {
+            float[] query = queryEmbeddingModel.embed(request.getQuery());
+            return aboveThreshold(annSearch(query, null, 1, request.getTopK(),
+                    quantization.isQuantized() ? rescoreFactor : 1), request);
+        }
+        Set<UUID> documentIds = DocumentIdFilters.documentIds(request.getFilterExpression());
+        if (documentIds == null) {
+            throw new IllegalArgumentException("Only documentId filters are supported: " + request.getFilterExpression());
+        }
+        if (documentIds.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = params(documentIds);
+        Long vectors = jdbcTemplate.queryForObject(COUNT_SQL, params, Long.class);
+        if (vectors == null || vectors == 0) {
+            return List.of();
+        }
+        float[] query = queryEmbeddingModel.embed(request.getQuery());
+        if (vectors <= exactSearchMaxVectors) {
+            return aboveThreshold(exactSearch(query, documentIds, request.getTopK()), request);
+        }
+        int candidateFactor = quantization.isQuantized() ? rescoreFactor : 1;
+        double share = share(vectors);
+        if (!iterativeScan && request.getTopK() * candidateFactor / share > MAX_EF_SEARCH) {
+            // ef_search cannot go deep enough to find topK rows of this document in the global index
+            return aboveThreshold(exactSearch(query, documentIds, request.getTopK()), request);
+        }
+        return aboveThreshold(annSearch(query, documentIds, share, request.getTopK(), candidateFactor), request);
+    }
+
+    private static List<Document> aboveThreshold(List<Document> found, SearchRequest request) {
+        List<Document> results = new ArrayList<>(found.size());
+        for (Document document : found) {
+            if (document.getScore() >= request.getSimilarityThreshold()) {
+                results.add(document);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Recall@topK and mean latency of index search, with and without rescoring, against exact
+     * float32 search. Queries are the stored vectors of up to {@code samples} random chunks, each
+     * searched within its own document, so no embedding calls are made. A query's own chunk is
+     * left out of every result set: all modes find it, so counting it would inflate recall.
+     * <p>
+     * Chunks are sampled with TABLESAMPLE SYSTEM, which reads a fraction of the table's pages
+     * (sized from the planner's row estimate) instead of sorting every row by random().
+     */
+    public ComparisonReport compare(int samples, int topK) {
+        var jdbc = jdbcTemplate.getJdbcTemplate();
+        Double estimatedRows = jdbc.queryForObject(
+                "SELECT reltuples FROM pg_class WHERE oid = to_regclass('vector_store')", Double.class);
+        // Oversample 4x, since whole pages are sampled; reltuples is -1 or 0 before the first ANALYZE
+        double percent = estimatedRows == null || estimatedRows <= 0
+                ? 100 : Math.min(100, samples * 4 * 100.0 / estimatedRows);
+        List<Map<String, Object>> sample = jdbcTemplate.queryForList(
+                "SELECT CAST(id AS text) AS id, document_id, CAST(embedding AS text) AS embedding " +
+                "FROM vector_store TABLESAMPLE SYSTEM (CAST(:percent AS real)) LIMIT :samples",
+                new MapSqlParameterSource("percent", percent).addValue("samples", samples));
+        long exactNanos = 0;
+        long annNanos = 0;
+        long rescoredNanos = 0;
+        int annHits = 0;
+        int rescoredHits = 0;
+        int expected = 0;
+        for (Map<String, Object> row : sample) {
+            String queryId = (String) row.get("id");
+            Set<UUID> documentId = Set.of((UUID) row.get("document_id"));
+            float[] query = parseVector((String) row.get("embedding"));
+
+            // topK + 1 each, so topK remain once the query's own chunk is dropped
+            long start = System.nanoTime();
+            Set<String> exact = new HashSet<>();
+            excluding(queryId, exactSearch(query, documentId, topK + 1), topK).forEach(d -> exact.add(d.getId()));
+            exactNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double share = share(documentVectors(documentId));
+            List<Document> ann = excluding(queryId, annSearch(query, documentId, share, topK + 1, 1), topK);
+            annNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<Document> rescored = excluding(queryId, annSearch(query, documentId, share, topK + 1, rescoreFactor), topK);
+            rescoredNanos += System.nanoTime() - start;
+
+            expected += exact.size();
+            annHits += (int) ann.stream().filter(d -> exact.contains(d.getId())).count();
+            rescoredHits += (int) rescored.stream().filter(d -> exact.contains(d.getId())).count();
+        }
+        int n = Math.max(1, sample.size());
+        double total = Math.max(1, expected);
+        Long vectors = jdbc.queryForObject("SELECT count(*) FROM vector_store", Long.class);
+        Long indexBytes = jdbc.queryForObject(
+                "SELECT coalesce(pg_relation_size(to_regclass('" + quantization.indexName() + "')), 0)", Long.class);
+        String mode = quantization.name().toLowerCase();
+        return new ComparisonReport(quantization.name(), sample.size(), topK,
+                vectors != null ? vectors : 0, indexBytes != null ? indexBytes : 0,
+                List.of(
+                        new ModeResult("exact-float32", 1.0, exactNanos / 1e6 / n),
+                        new ModeResult("hnsw-" + mode, annHits / total, annNanos / 1e6 / n),
+                        new ModeResult("hnsw-" + mode + "+rescore", rescoredHits / total, rescoredNanos / 1e6 / n)));
+    }
+
+    private static List<Document> excluding(String id, List<Document> found, int limit) {
+        return found.stream().filter(d -> !d.getId().equals(id)).limit(limit).toList();
+    }
+
+    private List<Document> exactSearch(float[] query, Set<UUID> documentIds, int topK) {
+        MapSqlParameterSource params = params(documentIds)
+                .addValue("query", toLiteral(query))
+                .addValue("topK", topK);
+        return jdbcTemplate.query(EXACT_SQL, params, (rs, rowNum) -> toDocument(rs.getString("id"),
+                rs.getString("content"), rs.getString("metadata"), rs.getDouble("score")));
+    }
+
+    private long documentVectors(Set<UUID> documentIds) {
+        Long vectors = jdbcTemplate.queryForObject(COUNT_SQL, params(documentIds), Long.class);
+        return vectors != null ? vectors : 0;
+    }
+
+    /**
+     * Fraction of vector_store rows that {@code vectors} filtered rows make up, from the planner's
+     * row estimate (no count of the whole table).
+     */
+    private double share(long vectors) {
+        Double estimatedRows = jdbcTemplate.getJdbcTemplate().queryForObject(
+                "SELECT reltuples FROM pg_class WHERE oid = to_regclass('vector_store')", Double.class);
+        if (estimatedRows == null || estimatedRows <= vectors) {
+            return 1;
+        }
+        return Math.max(vectors, 1) / estimatedRows;
+    }
+
+    /**
+     * @param documentIds null to search all documents
+     * @param share       fraction of all rows the documentIds filter keeps (1 without a filter)
+     */
+    private List<Document> annSearch(float[] query, Set<UUID> documentIds, double share, int topK,
+                                     int candidateFactor) {
+        int candidates = topK * candidateFactor;
+        MapSqlParameterSource params = (documentIds != null ? params(documentIds) : new MapSqlParameterSource())
+                .addValue("query", toLiteral(query))
+                .addValue("candidates", candidates)
+                .addValue("topK", topK);
+        String sql = ANN_SQL.replace("/*filter*/", documentIds != null ? DOCUMENT_FILTER : "")
+                .replace("/*distance*/", quantization.distanceExpression(dimensions));
+        // The HNSW scan returns at most ef_search rows, before the document filter drops any of them:
+        // an iterative scan keeps going past that until enough rows pass, otherwise ef_search has to
+        // cover the filtered-out rows too. set_config(..., true) only lasts for this transaction
+        boolean iterative = iterativeScan && documentIds != null;
+        long efSearch = iterative
+                ? Math.max(DEFAULT_EF_SEARCH, candidates * 2)
+                : (long) Math.ceil(Math.max(DEFAULT_EF_SEARCH, candidates * 2) / share);
+        long maxScanTuples = (long) Math.ceil(candidates * 4 / share);
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT set_config('hnsw.ef_search', :efSearch, true)",
+                    new MapSqlParameterSource("efSearch", String.valueOf(Math.min(MAX_EF_SEARCH, efSearch))),
+                    String.class);
+            if (iterative) {
+                jdbcTemplate.queryForObject("SELECT set_config('hnsw.iterative_scan', 'strict_order', true)",
+                        new MapSqlParameterSource(), String.class);
+                jdbcTemplate.queryForObject("SELECT set_config('hnsw.max_scan_tuples', :maxScanTuples, true)",
+                        new MapSqlParameterSource("maxScanTuples", String.valueOf(
+                                Math.min(MAX_SCAN_TUPLES, Math.max(DEFAULT_MAX_SCAN_TUPLES, maxScanTuples)))),
+                        String.class);
+            }
+            return jdbcTemplate.query(sql, params, (rs, rowNum) -> toDocument(rs.getString("id"),
+                    rs.getString("content"), rs.getString("metadata"), rs.getDouble("score")));
+        });
+    }
+
+    /**
+     * The ids as one uuid[] parameter ('{id,id,...}'), not one bind parameter each: an access-filtered
+     * search can name thousands of documents.
+     */
+    private static MapSqlParameterSource params(Set<UUID> documentIds) {
+        StringJoiner array = new StringJoiner(",", "{", "}");
+        documentIds.forEach(id -> array.add(id.toString()));
+        return new MapSqlParameterSource("documentIds", array.toString());
+    }
+
+    private Document toDocument(String id, String content, String metadata, double score) {
+        return Document.builder()
+                .id(id)
+                .text(content)
+                .metadata(parseMetadata(metadata))
+                .score(score)
+                .build();
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unserializable vector metadata", e);
+        }
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        if (json == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json, new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable vector_store metadata", e);
+        }
+    }
+
+    /**
+     * pgvector text form, '[x,y,...]'; the SQL casts it to vector.
+     */
+    private static String toLiteral(float[] vector) {
+        StringBuilder sb = new StringBuilder(vector.length * 12).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(vector[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private static float[] parseVector(String text) {
+        String[] parts = text.substring(1, text.length() - 1).split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i]);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,19 @@
+package com.collabstack.editor.vectorstore;
+
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A VectorStore partitioned by document, for stores that cannot run the SQL the pgvector
+ * path uses on vector_store (e.g. renumbering chunkIndex metadata with jsonb_set).
+ * Callers that know the document use these instead of the unscoped VectorStore operations.
+ */
+public interface DocumentScopedVectorStore extends VectorStore {
+
+    void delete(UUID documentId, Collection<String> ids);
+
+    void updateChunkIndexes(UUID documentId, Map<String, Integer> chunkIndexes);
+}
@@ -0,0 +1,404 @@
+package com.collabstack.editor.vectorstore;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hierarchical navigable small world graph over one document's chunk vectors (cosine similarity;
+ * vectors are normalized on insert, so similarity is a dot product). Vectors live in one primitive
+ * {@code float[]}, links in primitive arrays ({@code links[node][level] = {count, n1, n2, ...}}).
+ * <p>
+ * Removal marks a node deleted; it stays in the graph for navigation and is skipped in results
+ * until {@link #compact()} rebuilds the graph from the live nodes. Not thread-safe: callers lock.
+ * <p>
+ * Nodes hold no chunk text, only the chunk id and index: the text lives in document_chunks.
+ */
+final class HnswGraph {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int FORMAT_VERSION = 2;
+    // Version 1 stored each node's chunk text; it is skipped on read
+    private static final int FORMAT_VERSION_WITH_TEXT = 1;
+    // Up to this many nodes a linear scan is both exact and about as fast as walking the graph
+    private static final int EXACT_SEARCH_MAX_NODES = 1024;
+
+    record Hit(int node, float score) {}
+
+    private final int dimensions;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+
+    private float[] vectors;
+    private String[] ids;
+    private int[] chunkIndexes;
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+    private final Map<String, Integer> nodeById = new HashMap<>();
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswGraph(int dimensions, int m, int efConstruction) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        grow(16);
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    int liveCount() {
+        return size - deletedCount;
+    }
+
+    String id(int node) {
+        return ids[node];
+    }
+
+    int chunkIndex(int node) {
+        return chunkIndexes[node];
+    }
+
+    /**
+     * Inserts or replaces the vector stored under {@code id}.
+     */
+    void put(String id, int chunkIndex, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        remove(id);
+        if (size == ids.length) {
+            grow(size * 2);
+        }
+        int node = size++;
+        System.arraycopy(normalize(vector), 0, vectors, node * dimensions, dimensions);
+        ids[node] = id;
+        chunkIndexes[node] = chunkIndex;
+        nodeById.put(id, node);
+
+        int level = (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxLinks(l) + 1];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedy(vectors, node * dimensions, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Hit> nearest = searchLayer(vectors, node * dimensions, ep, efConstruction, l);
+            for (int i = 0; i < Math.min(m, nearest.size()); i++) {
+                int neighbor = nearest.get(i).node();
+                link(node, neighbor, l);
+                link(neighbor, node, l);
+            }
+            ep = nearest.get(0).node();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    boolean remove(String id) {
+        Integer node = nodeById.remove(id);
+        if (node == null) {
+            return false;
+        }
+        deleted.set(node);
+        deletedCount++;
+        return true;
+    }
+
+    boolean setChunkIndex(String id, int chunkIndex) {
+        Integer node = nodeById.get(id);
+        if (node == null) {
+            return false;
+        }
+        chunkIndexes[node] = chunkIndex;
+        return true;
+    }
+
+    /**
+     * Up to {@code k} live nodes most similar to {@code query}, best first.
+     */
+    List<Hit> search(float[] query, int k, int ef, double minScore) {
+        if (entryPoint < 0 || liveCount() == 0) {
+            return List.of();
+        }
+        float[] q = normalize(query);
+        if (size <= EXACT_SEARCH_MAX_NODES) {
+            return exactSearch(q, k, minScore);
+        }
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedy(q, 0, ep, l);
+        }
+        // Deleted nodes still occupy slots of the beam, so widen it by the share they take
+        int beam = Math.max(ef, k) + (int) ((long) Math.max(ef, k) * deletedCount / Math.max(1, liveCount()));
+        List<Hit> hits = new ArrayList<>(k);
+        for (Hit hit : searchLayer(q, 0, ep, beam, 0)) {
+            if (hits.size() == k || hit.score() < minScore) {
+                break;
+            }
+            if (!deleted.get(hit.node())) {
+                hits.add(hit);
+            }
+        }
+        return hits;
+    }
+
+    private List<Hit> exactSearch(float[] query, int k, double minScore) {
+        PriorityQueue<Hit> best = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+        for (int node = 0; node < size; node++) {
+            if (deleted.get(node)) {
+                continue;
+            }
+            float score = similarity(query, 0, node);
+            if (score >= minScore && (best.size() < k || score > best.peek().score())) {
+                best.add(new Hit(node, score));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+        return hits;
+    }
+
+    /**
+     * Whether enough nodes are deleted that rebuilding pays off.
+     */
+    boolean needsCompaction() {
+        return deletedCount > 16 && deletedCount * 3 > liveCount();
+    }
+
+    HnswGraph compact() {
+        HnswGraph graph = new HnswGraph(dimensions, m, efConstruction);
+        float[] vector = new float[dimensions];
+        for (int node = 0; node < size; node++) {
+            if (!deleted.get(node)) {
+                System.arraycopy(vectors, node * dimensions, vector, 0, dimensions);
+                graph.put(ids[node], chunkIndexes[node], vector);
+            }
+        }
+        return graph;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(dimensions);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(size);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            out.writeBoolean(deleted.get(node));
+            out.writeUTF(ids[node]);
+            out.writeInt(chunkIndexes[node]);
+            for (int i = node * dimensions; i < (node + 1) * dimensions; i++) {
+                out.writeFloat(vectors[i]);
+            }
+            out.writeInt(links[node].length);
+            for (int[] level : links[node]) {
+                out.writeInt(level[0]);
+                for (int i = 1; i <= level[0]; i++) {
+                    out.writeInt(level[i]);
+                }
+            }
+        }
+    }
+
+    static HnswGraph read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an HNSW index file");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION && version != FORMAT_VERSION_WITH_TEXT) {
+            throw new IOException("Unsupported HNSW index format version " + version);
+        }
+        HnswGraph graph = new HnswGraph(in.readInt(), in.readInt(), in.readInt());
+        int size = in.readInt();
+        graph.grow(Math.max(16, size));
+        graph.entryPoint = in.readInt();
+        graph.maxLevel = in.readInt();
+        int dimensions = graph.dimensions;
+        for (int node = 0; node < size; node++) {
+            boolean isDeleted = in.readBoolean();
+            graph.ids[node] = in.readUTF();
+            graph.chunkIndexes[node] = in.readInt();
+            if (version == FORMAT_VERSION_WITH_TEXT) {
+                int textLength = in.readInt();
+                if (textLength > 0) {
+                    in.skipNBytes(textLength);
+                }
+            }
+            for (int i = node * dimensions; i < (node + 1) * dimensions; i++) {
+                graph.vectors[i] = in.readFloat();
+            }
+            int levels = in.readInt();
+            graph.links[node] = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int count = in.readInt();
+                int[] level = new int[graph.maxLinks(l) + 1];
+                level[0] = count;
+                for (int i = 1; i <= count; i++) {
+                    level[i] = in.readInt();
+                }
+                graph.links[node][l] = level;
+            }
+            if (isDeleted) {
+                graph.deleted.set(node);
+                graph.deletedCount++;
+            } else {
+                graph.nodeById.put(graph.ids[node], node);
+            }
+        }
+        graph.size = size;
+        return graph;
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? m * 2 : m;
+    }
+
+    private void grow(int capacity) {
+        vectors = vectors == null ? new float[capacity * dimensions] : Arrays.copyOf(vectors, capacity * dimensions);
+        ids = ids == null ? new String[capacity] : Arrays.copyOf(ids, capacity);
+        chunkIndexes = chunkIndexes == null ? new int[capacity] : Arrays.copyOf(chunkIndexes, capacity);
+        links = links == null ? new int[capacity][][] : Arrays.copyOf(links, capacity);
+    }
+
+    /**
+     * Adds {@code to} to the links of {@code from}; a full list keeps its closest entries.
+     */
+    private void link(int from, int to, int level) {
+        int[] list = links[from][level];
+        int count = list[0];
+        if (count < list.length - 1) {
+            list[++list[0]] = to;
+            return;
+        }
+        List<Hit> candidates = new ArrayList<>(count + 1);
+        candidates.add(new Hit(to, similarity(vectors, from * dimensions, to)));
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Hit(list[i], similarity(vectors, from * dimensions, list[i])));
+        }
+        candidates.sort(Comparator.comparingDouble(Hit::score).reversed());
+        for (int i = 0; i < count; i++) {
+            list[i + 1] = candidates.get(i).node();
+        }
+    }
+
+    private int greedy(float[] query, int offset, int ep, int level) {
+        int current = ep;
+        float best = similarity(query, offset, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            if (level >= links[current].length) {
+                break;
+            }
+            int[] list = links[current][level];
+            for (int i = 1; i <= list[0]; i++) {
+                float score = similarity(query, offset, list[i]);
+                if (score > best) {
+                    best = score;
+                    current = list[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one level; returns up to {@code ef} nodes, best first (deleted ones included).
+     */
+    private List<Hit> searchLayer(float[] query, int offset, int ep, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        visited.set(ep);
+        Hit start = new Hit(ep, similarity(query, offset, ep));
+        PriorityQueue<Hit> candidates = new PriorityQueue<>(Comparator.comparingDouble(Hit::score).reversed());
+        PriorityQueue<Hit> results = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+        candidates.add(start);
+        results.add(start);
+        while (!candidates.isEmpty()) {
+            Hit current = candidates.poll();
+            if (results.size() >= ef && current.score() < results.peek().score()) {
+                break;
+            }
+            if (level >= links[current.node()].length) {
+                continue;
+            }
+            int[] list = links[current.node()][level];
+            for (int i = 1; i <= list[0]; i++) {
+                int neighbor = list[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float score = similarity(query, offset, neighbor);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Hit hit = new Hit(neighbor, score);
+                    candidates.add(hit);
+                    results.add(hit);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Hit> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Hit::score).reversed());
+        return sorted;
+    }
+
+    private float similarity(float[] query, int offset, int node) {
+        int base = node * dimensions;
+        float dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[offset + i] * vectors[base + i];
+        }
+        return dot;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = Arrays.copyOf(vector, vector.length);
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+        return normalized;
+    }
+}
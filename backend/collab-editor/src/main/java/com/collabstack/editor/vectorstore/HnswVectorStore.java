@@ -0,0 +1,447 @@
+package com.collabstack.editor.vectorstore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-JVM VectorStore with one {@link HnswGraph} per document, selected by app.rag.vector-store=hnsw.
+ * Retrieval never leaves the process; only the question is embedded.
+ * <p>
+ * Each graph is persisted to {@code <directory>/<documentId>.hnsw} after every write (temp file,
+ * then atomic move), loaded on first use and dropped from memory least-recently-used beyond
+ * {@code maxLoadedDocuments}. An entry is pinned while a reader or writer uses it and is never
+ * evicted while pinned, so there is only ever one in-memory graph per document. Deleting a
+ * document's index tombstones its entry under the write lock; a writer that was waiting on it
+ * starts over on a fresh entry instead of persisting the deleted graph again. Writes are not part
+ * of the database transaction, and the files are local to this instance: run a single instance,
+ * or keep pgvector.
+ * <p>
+ * Graphs hold no chunk text: it is stored once, in document_chunks under the same id, and joined
+ * for the final hits of a search (one primary key lookup), as {@link DocumentPgVectorStore} does.
+ * <p>
+ * Filters: only {@code documentId == '...'}, {@code documentId IN [...]} and OR-combinations of them;
+ * a search must name its documents, at most {@code maxSearchDocuments} of them: each one may be a
+ * graph to load from disk, so a search across many documents has no latency bound here (that is
+ * what the pgvector store is for).
+ */
+@Slf4j
+public class HnswVectorStore implements DocumentScopedVectorStore {
+
+    private static final String DOCUMENT_ID = DocumentIdFilters.DOCUMENT_ID;
+    private static final String CHUNK_INDEX = "chunkIndex";
+    private static final String FILE_SUFFIX = ".hnsw";
+    private static final String SELECT_CHUNK_TEXTS = "SELECT id, content FROM document_chunks WHERE id IN (:ids)";
+
+    /**
+     * Chunk texts by chunk id; ids without a stored chunk are left out.
+     */
+    interface ChunkTexts {
+        Map<String, String> find(Collection<String> ids);
+    }
+
+    private record Match(String id, UUID documentId, int chunkIndex, float score) {}
+
+    /**
+     * {@code graph} is loaded lazily under the write lock, so file reads never hold the map's monitor.
+     */
+    private static final class Entry {
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        HnswGraph graph;
+        // guarded by the write lock
+        boolean deleted;
+        // guarded by the loaded map's monitor
+        int pins;
+    }
+
+    private final EmbeddingModel documentEmbeddingModel;
+    private final EmbeddingModel queryEmbeddingModel;
+    private final ChunkTexts chunkTexts;
+    private final Path directory;
+    private final int dimensions;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int maxLoadedDocuments;
+    private final int maxSearchDocuments;
+    // access order, least recently used first
+    private final Map<UUID, Entry> loaded = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param documentEmbeddingModel embeds chunks on {@link #add}
+     * @param queryEmbeddingModel    embeds search queries
+     */
+    public HnswVectorStore(EmbeddingModel documentEmbeddingModel, EmbeddingModel queryEmbeddingModel,
+                           NamedParameterJdbcTemplate jdbcTemplate, Path directory, int dimensions,
+                           int maxLoadedDocuments, int maxSearchDocuments, int m, int efConstruction, int efSearch) {
+        this(documentEmbeddingModel, queryEmbeddingModel, ids -> findChunkTexts(jdbcTemplate, ids), directory,
+                dimensions, maxLoadedDocuments, maxSearchDocuments, m, efConstruction, efSearch);
+    }
+
+    HnswVectorStore(EmbeddingModel documentEmbeddingModel, EmbeddingModel queryEmbeddingModel, ChunkTexts chunkTexts,
+                    Path directory, int dimensions, int maxLoadedDocuments, int maxSearchDocuments, int m,
+                    int efConstruction, int efSearch) {
+        this.documentEmbeddingModel = documentEmbeddingModel;
+        this.queryEmbeddingModel = queryEmbeddingModel;
+        this.chunkTexts = chunkTexts;
+        this.directory = directory;
+        this.dimensions = dimensions;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.maxLoadedDocuments = maxLoadedDocuments;
+        this.maxSearchDocuments = maxSearchDocuments;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create HNSW index directory " + directory, e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "HnswVectorStore";
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = documentEmbeddingModel.embed(documents.stream().map(Document::getText).toList());
+        Map<UUID, List<Integer>> byDocument = new LinkedHashMap<>();
+        for (int i = 0; i < documents.size(); i++) {
+            byDocument.computeIfAbsent(documentId(documents.get(i)), d -> new ArrayList<>()).add(i);
+        }
+        byDocument.forEach((documentId, positions) -> write(documentId, true, graph -> {
+            for (int i : positions) {
+                Document document = documents.get(i);
+                Object chunkIndex = document.getMetadata().get(CHUNK_INDEX);
+                graph.put(document.getId(), chunkIndex instanceof Number n ? n.intValue() : -1, embeddings.get(i));
+            }
+            return true;
+        }));
+    }
+
+    @Override
+    public void delete(UUID documentId, Collection<String> ids) {
+        write(documentId, false, graph -> {
+            boolean changed = false;
+            for (String id : ids) {
+                changed |= graph.remove(id);
+            }
+            return changed;
+        });
+    }
+
+    @Override
+    public void updateChunkIndexes(UUID documentId, Map<String, Integer> chunkIndexes) {
+        if (chunkIndexes.isEmpty()) {
+            return;
+        }
+        write(documentId, false, graph -> {
+            boolean changed = false;
+            for (Map.Entry<String, Integer> e : chunkIndexes.entrySet()) {
+                changed |= graph.setChunkIndex(e.getKey(), e.getValue());
+            }
+            return changed;
+        });
+    }
+
+    /**
+     * Unscoped delete: has to look through every document's index. Prefer {@link #delete(UUID, Collection)}.
+     */
+    @Override
+    public void delete(List<String> idList) {
+        Set<String> remaining = new HashSet<>(idList);
+        for (UUID documentId : storedDocumentIds()) {
+            if (remaining.isEmpty()) {
+                return;
+            }
+            write(documentId, false, graph -> remaining.removeIf(graph::remove));
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        for (UUID documentId : documentIds(filterExpression)) {
+            // Pinned even if nothing is loaded: a writer may be about to load or create the file
+            Entry entry = pin(documentId, true);
+            try {
+                entry.lock.writeLock().lock();
+                try {
+                    entry.deleted = true;
+                    entry.graph = null;
+                    synchronized (loaded) {
+                        loaded.remove(documentId, entry);
+                    }
+                    Files.deleteIfExists(file(documentId));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to delete HNSW index of document " + documentId, e);
+                } finally {
+                    entry.lock.writeLock().unlock();
+                }
+            } finally {
+                unpin(entry);
+            }
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (!request.hasFilterExpression()) {
+            throw new UnsupportedOperationException("HnswVectorStore searches need a documentId filter");
+        }
+        Set<UUID> documentIds = documentIds(request.getFilterExpression());
+        if (documentIds.size() > maxSearchDocuments) {
+            throw new UnsupportedOperationException("HnswVectorStore searches at most " + maxSearchDocuments
+                    + " documents at a time, got " + documentIds.size());
+        }
+        float[] query = queryEmbeddingModel.embed(request.getQuery());
+        List<Match> matches = new ArrayList<>();
+        for (UUID documentId : documentIds) {
+            Entry entry = pin(documentId, false);
+            if (entry == null) {
+                continue;
+            }
+            try {
+                if (!lockForRead(documentId, entry)) {
+                    continue;
+                }
+                try {
+                    HnswGraph graph = entry.graph;
+                    for (HnswGraph.Hit hit : graph.search(query, request.getTopK(), efSearch,
+                            request.getSimilarityThreshold())) {
+                        matches.add(new Match(graph.id(hit.node()), documentId, graph.chunkIndex(hit.node()),
+                                hit.score()));
+                    }
+                } finally {
+                    entry.lock.readLock().unlock();
+                }
+            } finally {
+                unpin(entry);
+            }
+        }
+        if (documentIds.size() > 1) {
+            matches.sort(Comparator.comparingDouble(Match::score).reversed());
+        }
+        List<Match> top = matches.size() > request.getTopK() ? matches.subList(0, request.getTopK()) : matches;
+        if (top.isEmpty()) {
+            return List.of();
+        }
+        Map<String, String> texts = chunkTexts.find(top.stream().map(Match::id).toList());
+        return top.stream()
+                .map(match -> Document.builder()
+                        .id(match.id())
+                        .text(texts.getOrDefault(match.id(), ""))
+                        .metadata(Map.of(DOCUMENT_ID, match.documentId().toString(),
+                                CHUNK_INDEX, match.chunkIndex(),
+                                "distance", 1 - match.score()))
+                        .score((double) match.score())
+                        .build())
+                .toList();
+    }
+
+    private static Map<String, String> findChunkTexts(NamedParameterJdbcTemplate jdbcTemplate, Collection<String> ids) {
+        Map<String, String> texts = new HashMap<>();
+        jdbcTemplate.query(SELECT_CHUNK_TEXTS, Map.of("ids", ids.stream().map(UUID::fromString).toList()),
+                rs -> { texts.put(rs.getString("id"), rs.getString("content")); });
+        return texts;
+    }
+
+    private interface GraphWrite {
+        boolean apply(HnswGraph graph);
+    }
+
+    /**
+     * Applies a change under the document's write lock and persists the graph if anything changed.
+     * If the document's index was deleted while this waited for the lock, starts over on a new entry.
+     */
+    private void write(UUID documentId, boolean create, GraphWrite change) {
+        while (true) {
+            Entry entry = pin(documentId, create);
+            if (entry == null) {
+                return;
+            }
+            try {
+                entry.lock.writeLock().lock();
+                try {
+                    if (entry.deleted) {
+                        continue;
+                    }
+                    if (entry.graph == null) {
+                        entry.graph = load(documentId, create);
+                    }
+                    if (entry.graph == null || !change.apply(entry.graph)) {
+                        return;
+                    }
+                    if (entry.graph.needsCompaction()) {
+                        entry.graph = entry.graph.compact();
+                    }
+                    persist(documentId, entry.graph);
+                    return;
+                } finally {
+                    entry.lock.writeLock().unlock();
+                }
+            } finally {
+                unpin(entry);
+            }
+        }
+    }
+
+    /**
+     * Takes the entry's read lock with its graph loaded. Returns false, holding no lock, if the
+     * document has no index (any more).
+     */
+    private boolean lockForRead(UUID documentId, Entry entry) {
+        entry.lock.readLock().lock();
+        if (entry.graph != null) {
+            return true;
+        }
+        entry.lock.readLock().unlock();
+        entry.lock.writeLock().lock();
+        try {
+            if (entry.graph == null && !entry.deleted) {
+                entry.graph = load(documentId, false);
+            }
+            if (entry.graph == null) {
+                return false;
+            }
+            // Downgrade: take the read lock before releasing the write lock
+            entry.lock.readLock().lock();
+            return true;
+        } finally {
+            entry.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the document's entry, pinned against eviction until {@link #unpin}; null if it is not
+     * loaded, has no file and {@code create} is false.
+     */
+    private Entry pin(UUID documentId, boolean create) {
+        synchronized (loaded) {
+            Entry entry = loaded.get(documentId);
+            if (entry == null) {
+                if (!create && !Files.exists(file(documentId))) {
+                    return null;
+                }
+                entry = new Entry();
+                loaded.put(documentId, entry);
+            }
+            entry.pins++;
+            return entry;
+        }
+    }
+
+    /**
+     * Releases a pin, then drops least recently used unpinned entries beyond maxLoadedDocuments.
+     * Their files are current: every write persists before it unpins.
+     */
+    private void unpin(Entry entry) {
+        synchronized (loaded) {
+            entry.pins--;
+            Iterator<Entry> eldest = loaded.values().iterator();
+            while (loaded.size() > maxLoadedDocuments && eldest.hasNext()) {
+                if (eldest.next().pins == 0) {
+                    eldest.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the document's graph from its file; a new empty graph if there is none and
+     * {@code create} is set, else null.
+     */
+    private HnswGraph load(UUID documentId, boolean create) {
+        Path file = file(documentId);
+        if (!Files.exists(file)) {
+            return create ? new HnswGraph(dimensions, m, efConstruction) : null;
+        }
+        HnswGraph graph;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            graph = HnswGraph.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load HNSW index of document " + documentId, e);
+        }
+        log.debug("Loaded HNSW index of document {} ({} vectors)", documentId, graph.liveCount());
+        return graph;
+    }
+
+    private void persist(UUID documentId, HnswGraph graph) {
+        Path file = file(documentId);
+        try {
+            if (graph.liveCount() == 0) {
+                Files.deleteIfExists(file);
+                return;
+            }
+            Path temp = Files.createTempFile(directory, documentId.toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                graph.write(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist HNSW index of document " + documentId, e);
+        }
+    }
+
+    private List<UUID> storedDocumentIds() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.endsWith(FILE_SUFFIX))
+                    .map(name -> UUID.fromString(name.substring(0, name.length() - FILE_SUFFIX.length())))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list HNSW index directory " + directory, e);
+        }
+    }
+
+    private Path file(UUID documentId) {
+        return directory.resolve(documentId + FILE_SUFFIX);
+    }
+
+    private static UUID documentId(Document document) {
+        Object documentId = document.getMetadata().get(DOCUMENT_ID);
+        if (documentId == null) {
+            throw new IllegalArgumentException("Document " + document.getId() + " has no documentId metadata");
+        }
+        return UUID.fromString(documentId.toString());
+    }
+
+    private static Set<UUID> documentIds(Filter.Expression expression) {
+        Set<UUID> documentIds = DocumentIdFilters.documentIds(expression);
+        if (documentIds == null) {
+            throw new UnsupportedOperationException(
+                    "HnswVectorStore only supports documentId ==, IN and OR filters, got " + expression);
+        }
+        return documentIds;
+    }
+}
@@ -0,0 +1,34 @@
+package com.collabstack.editor.vectorstore;
+
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * /actuator/quantization?samples=&topK= — recall/latency of the (possibly quantized) HNSW index
+ * against exact float32 search (see {@link DocumentPgVectorStore#compare}).
+ */
+@Component
+@Endpoint(id = "quantization")
+public class QuantizationEndpoint {
+
+    private static final int MAX_SAMPLES = 500;
+
+    private final ObjectProvider<VectorStore> vectorStore;
+
+    public QuantizationEndpoint(ObjectProvider<VectorStore> vectorStore) {
+        this.vectorStore = vectorStore;
+    }
+
+    @ReadOperation
+    public Object compare(@Nullable Integer samples, @Nullable Integer topK) {
+        if (!(vectorStore.getIfAvailable() instanceof DocumentPgVectorStore pgVectorStore)) {
+            return "Not available: the vector store is not pgvector";
+        }
+        int n = Math.min(samples != null ? samples : 100, MAX_SAMPLES);
+        return pgVectorStore.compare(n, topK != null ? topK : 6);
+    }
+}
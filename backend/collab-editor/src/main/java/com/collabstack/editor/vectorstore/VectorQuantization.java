@@ -0,0 +1,47 @@
+package com.collabstack.editor.vectorstore;
+
+/**
+ * How vector_store embeddings are indexed for candidate search (app.rag.quantization.mode).
+ * Quantized modes index a compact expression of the float32 column and rescore the candidates
+ * exactly against the stored floats.
+ */
+public enum VectorQuantization {
+
+    /** HNSW over float32 vectors, as created by PgVectorStore (4 bytes/dimension). */
+    NONE(null, "embedding <=> CAST(:query AS vector)"),
+
+    /** HNSW over half-precision vectors (2 bytes/dimension, ~2x smaller index). Needs pgvector 0.7+. */
+    HALFVEC("USING hnsw ((embedding::halfvec(%1$d)) halfvec_cosine_ops)",
+            "embedding::halfvec(%1$d) <=> CAST(:query AS vector)::halfvec(%1$d)"),
+
+    /** HNSW over sign bits (1 bit/dimension, ~32x smaller index); relies on rescoring. Needs pgvector 0.7+. */
+    BINARY("USING hnsw ((binary_quantize(embedding)::bit(%1$d)) bit_hamming_ops)",
+            "binary_quantize(embedding)::bit(%1$d) <~> binary_quantize(CAST(:query AS vector))");
+
+    private final String indexMethod;
+    private final String distanceExpression;
+
+    VectorQuantization(String indexMethod, String distanceExpression) {
+        this.indexMethod = indexMethod;
+        this.distanceExpression = distanceExpression;
+    }
+
+    boolean isQuantized() {
+        return indexMethod != null;
+    }
+
+    String indexName() {
+        return isQuantized() ? "vector_store_embedding_" + name().toLowerCase() + "_idx" : "spring_ai_vector_index";
+    }
+
+    String indexMethod(int dimensions) {
+        return indexMethod.formatted(dimensions);
+    }
+
+    /**
+     * ORDER BY expression that the mode's HNSW index serves; {@code :query} is the float query vector.
+     */
+    String distanceExpression(int dimensions) {
+        return distanceExpression.formatted(dimensions);
+    }
+}
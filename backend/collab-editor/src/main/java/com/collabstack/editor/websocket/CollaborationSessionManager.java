@@ -2,6 +2,7 @@ package com.collabstack.editor.websocket;
 
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -10,6 +11,9 @@ public class CollaborationSessionManager {
 
     private final ConcurrentHashMap<UUID, DocumentSession> sessions = new ConcurrentHashMap<>();
 
+    // Cleared on shutdown; the handler then refuses new connections and leaves snapshots to the flusher
+    private volatile boolean accepting = true;
+
     /**
      * Returns existing DocumentSession or creates a new one seeded with initialContent/revision.
      */
@@ -25,6 +29,21 @@ public class CollaborationSessionManager {
         return sessions.get(documentId);
     }
 
+    /**
+     * Snapshot view of all live document sessions.
+     */
+    public Collection<DocumentSession> getAll() {
+        return sessions.values();
+    }
+
+    public boolean isAccepting() {
+        return accepting;
+    }
+
+    public void stopAccepting() {
+        accepting = false;
+    }
+
     /**
      * Removes the document session entirely (called when last user disconnects).
      */
@@ -2,14 +2,26 @@ package com.collabstack.editor.websocket;
 
 import com.collabstack.editor.dto.websocket.OperationMessage;
 import com.collabstack.editor.dto.websocket.OperationType;
+import com.collabstack.editor.dto.websocket.ViewportUnit;
+import com.collabstack.editor.dto.websocket.WindowSyncMessage;
+import com.collabstack.editor.entity.CollaboratorRole;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 @Slf4j
 public class DocumentSession {
@@ -22,77 +34,242 @@ public class DocumentSession {
     @Getter
     private volatile long revision;
 
-    // sessionId -> WebSocketSession
-    private final ConcurrentHashMap<String, WebSocketSession> activeSessions = new ConcurrentHashMap<>();
+    // Revision last written to documents.content_snapshot; behind `revision` means dirty
+    private volatile long persistedRevision;
 
-    // sessionId -> UserInfo
-    private final ConcurrentHashMap<String, UserInfo> sessionUsers = new ConcurrentHashMap<>();
+    // Set on shutdown: no further ops are applied once the final checkpoint is taken
+    private boolean sealed;
+
+    // Beyond this many unflushed viewer messages, viewers are re-synced instead
+    private static final int MAX_VIEWER_BACKLOG = 10_000;
+
+    // sessionId -> connected client
+    private final ConcurrentHashMap<String, Participant> participants = new ConcurrentHashMap<>();
+
+    // Pre-serialized ops waiting for the next viewer flush (see ViewerBroadcaster); enqueued under
+    // the session lock as revisions are assigned, so the queue is in revision order
+    private final ConcurrentLinkedQueue<QueuedOp> viewerBacklog = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger viewerBacklogSize = new AtomicInteger();
+    // Guarded by the session lock, so setting and taking it are atomic with the revision
+    private boolean viewerResyncPending;
+    // Revision of the last viewer re-sync; queued ops at or below it are already in that SYNC.
+    // Only touched by the broadcaster thread.
+    private long viewerSyncedRevision;
+
+    private record QueuedOp(long revision, String json) {}
 
     public record UserInfo(String userId, String username) {}
 
+    /**
+     * Result of applying one operation.
+     *
+     * @param position     clamped position the op was applied at
+     * @param delta        change in document length
+     * @param shiftOnly    paged sessions whose window the op did not touch — they get a SHIFT, not the op
+     * @param opJson       the op as broadcast to other sessions
+     */
+    public record AppliedOperation(int position, int delta, int totalLength, long revision, Set<String> shiftOnly,
+                                   String opJson) {}
+
+    /**
+     * Viewer messages drained for one flush, in revision order; {@code revision} is the last one's.
+     * A non-null {@code resync} means the backlog overflowed: viewers get that SYNC first, and
+     * {@code messages} only holds ops newer than it.
+     */
+    public record ViewerBatch(List<String> messages, long revision, Checkpoint resync) {}
+
+    /**
+     * Content and revision captured together under the session lock.
+     */
+    public record Checkpoint(UUID documentId, String content, long revision) {}
+
     public DocumentSession(UUID documentId, String initialContent, long revision) {
         this.documentId = documentId;
         this.currentContent = initialContent != null ? initialContent : "";
         this.revision = revision;
+        this.persistedRevision = revision;
     }
 
     /**
      * Applies an operation to the document content.
      * Server-authoritative OT: for MVP, applies ops as-is regardless of revision delta.
      * Full OT transform against missed ops is a future improvement.
+     * Paged-mode viewports are moved along with the edit in the same critical section, and the op
+     * is queued for full-document viewers there too, so they receive ops in revision order.
+     * Returns null once the session is sealed.
      *
-     * @return the new document content after apply
+     * @param toJson serializes the applied op for broadcasting (called once, under the lock)
      */
-    public synchronized String applyOperation(OperationMessage op) {
+    public synchronized AppliedOperation applyOperation(OperationMessage op, Function<Long, String> toJson) {
+        if (sealed) {
+            return null;
+        }
+        int pos = Math.min(Math.max(op.position(), 0), currentContent.length());
+        int delta = 0;
         if (op.opType() == OperationType.INSERT && op.content() != null) {
-            int pos = Math.min(Math.max(op.position(), 0), currentContent.length());
             currentContent = currentContent.substring(0, pos)
                     + op.content()
                     + currentContent.substring(pos);
+            delta = op.content().length();
         } else if (op.opType() == OperationType.DELETE) {
-            int pos = Math.min(Math.max(op.position(), 0), currentContent.length());
             int end = Math.min(pos + op.length(), currentContent.length());
             if (pos < end) {
                 currentContent = currentContent.substring(0, pos) + currentContent.substring(end);
+                delta = pos - end;
             }
         }
         revision++;
-        return currentContent;
+        Set<String> shiftOnly = delta == 0 ? Set.of() : moveViewports(pos, delta);
+        String opJson = toJson.apply(revision);
+        if (participants.values().stream().anyMatch(Participant::isBatchedViewer)) {
+            enqueueForViewers(revision, opJson);
+        }
+        return new AppliedOperation(pos, delta, currentContent.length(), revision, shiftOnly, opJson);
     }
 
     public synchronized String getCurrentContent() {
         return currentContent;
     }
 
-    public void addSession(String sessionId, WebSocketSession ws, String userId, String username) {
-        activeSessions.put(sessionId, ws);
-        sessionUsers.put(sessionId, new UserInfo(userId, username));
+    /**
+     * Content and revision read together, e.g. for a SYNC; clients drop ops at or below the revision.
+     */
+    public synchronized Checkpoint checkpoint() {
+        return new Checkpoint(documentId, currentContent, revision);
+    }
+
+    /**
+     * Stops accepting ops and returns the final state. Later ops are rejected by
+     * {@link #applyOperation}, so the checkpoint cannot go stale.
+     */
+    public synchronized Checkpoint seal() {
+        sealed = true;
+        return new Checkpoint(documentId, currentContent, revision);
+    }
+
+    public boolean isDirty() {
+        return revision != persistedRevision;
+    }
+
+    public void markPersisted(long persistedRevision) {
+        this.persistedRevision = persistedRevision;
+    }
+
+    /**
+     * Closes every client connection, e.g. with 1012 (service restart) so clients reconnect elsewhere.
+     */
+    public void closeAll(CloseStatus status) {
+        participants.forEach((sessionId, participant) -> {
+            try {
+                participant.getWebSocket().close(status);
+            } catch (IOException e) {
+                log.debug("Failed to close session {}: {}", sessionId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Switches a client to paged mode (or moves its window) and returns the window contents.
+     * Line windows are resolved to char offsets once; afterwards the window is tracked in chars.
+     */
+    public synchronized WindowSyncMessage subscribeViewport(String sessionId, ViewportUnit unit, int start, int length) {
+        Participant participant = participants.get(sessionId);
+        int from;
+        int to;
+        if (unit == ViewportUnit.LINES) {
+            from = lineOffset(Math.max(start, 0));
+            to = lineOffset(Math.max(start, 0) + Math.max(length, 0));
+        } else {
+            from = Math.min(Math.max(start, 0), currentContent.length());
+            to = Math.min(from + Math.max(length, 0), currentContent.length());
+        }
+        if (participant != null) {
+            participant.setViewport(new Participant.Viewport(from, to - from));
+        }
+        return new WindowSyncMessage("SYNC_WINDOW", currentContent.substring(from, to),
+                from, to - from, currentContent.length(), revision);
+    }
+
+    public void addSession(String sessionId, WebSocketSession ws, String userId, String username,
+                           CollaboratorRole role) {
+        participants.put(sessionId, new Participant(ws, new UserInfo(userId, username), role));
     }
 
     public void removeSession(String sessionId) {
-        activeSessions.remove(sessionId);
-        sessionUsers.remove(sessionId);
+        participants.remove(sessionId);
     }
 
     public boolean isEmpty() {
-        return activeSessions.isEmpty();
+        return participants.isEmpty();
     }
 
     public UserInfo getUserInfo(String sessionId) {
-        return sessionUsers.get(sessionId);
+        Participant participant = participants.get(sessionId);
+        return participant != null ? participant.getUserInfo() : null;
+    }
+
+    /**
+     * Fans an applied operation out to all sessions except the sender: full-document and
+     * in-window sessions get the op, paged sessions it missed get the (smaller) SHIFT summary.
+     * Full-document viewers are not sent to here — {@link #applyOperation} queued the op for the
+     * viewer broadcaster.
+     */
+    public void broadcastOperation(AppliedOperation applied, String shiftJson, String senderSessionId) {
+        for (Map.Entry<String, Participant> entry : participants.entrySet()) {
+            String sid = entry.getKey();
+            Participant participant = entry.getValue();
+            if (sid.equals(senderSessionId) || participant.isBatchedViewer()) {
+                continue;
+            }
+            send(sid, participant.getWebSocket(), applied.shiftOnly().contains(sid) ? shiftJson : applied.opJson());
+        }
+    }
+
+    /**
+     * Takes everything queued for viewers since the last flush, in revision order. After a
+     * re-sync, queued ops the SYNC already contains are dropped.
+     */
+    public ViewerBatch drainViewerBacklog() {
+        Checkpoint resync = null;
+        synchronized (this) {
+            if (viewerResyncPending) {
+                viewerResyncPending = false;
+                resync = new Checkpoint(documentId, currentContent, revision);
+            }
+        }
+        if (resync != null) {
+            viewerSyncedRevision = resync.revision();
+        }
+        List<QueuedOp> drained = new ArrayList<>();
+        QueuedOp op;
+        while ((op = viewerBacklog.poll()) != null) {
+            viewerBacklogSize.decrementAndGet();
+            if (op.revision() > viewerSyncedRevision) {
+                drained.add(op);
+            }
+        }
+        long last = drained.isEmpty() ? viewerSyncedRevision : drained.get(drained.size() - 1).revision();
+        return new ViewerBatch(drained.stream().map(QueuedOp::json).toList(), last, resync);
+    }
+
+    /**
+     * Sends one pre-serialized frame to every full-document viewer.
+     */
+    public void sendToBatchedViewers(String json) {
+        participants.forEach((sid, participant) -> {
+            if (participant.isBatchedViewer()) {
+                send(sid, participant.getWebSocket(), json);
+            }
+        });
     }
 
     /**
      * Broadcasts a JSON message to all sessions EXCEPT the sender.
      */
     public void broadcastToOthers(String json, String senderSessionId) {
-        activeSessions.forEach((sid, ws) -> {
-            if (!sid.equals(senderSessionId) && ws.isOpen()) {
-                try {
-                    ws.sendMessage(new TextMessage(json));
-                } catch (IOException e) {
-                    log.warn("Failed to send message to session {}: {}", sid, e.getMessage());
-                }
+        participants.forEach((sid, participant) -> {
+            if (!sid.equals(senderSessionId)) {
+                send(sid, participant.getWebSocket(), json);
             }
         });
     }
@@ -101,14 +278,83 @@ public class DocumentSession {
      * Broadcasts a JSON message to ALL connected sessions.
      */
     public void broadcastToAll(String json) {
-        activeSessions.forEach((sid, ws) -> {
-            if (ws.isOpen()) {
-                try {
-                    ws.sendMessage(new TextMessage(json));
-                } catch (IOException e) {
-                    log.warn("Failed to broadcast to session {}: {}", sid, e.getMessage());
-                }
+        participants.forEach((sid, participant) -> send(sid, participant.getWebSocket(), json));
+    }
+
+    /**
+     * Called under the session lock.
+     */
+    private void enqueueForViewers(long revision, String json) {
+        if (viewerBacklogSize.incrementAndGet() > MAX_VIEWER_BACKLOG) {
+            // Viewers fell too far behind — a SYNC is cheaper than replaying the backlog
+            viewerBacklogSize.decrementAndGet();
+            viewerResyncPending = true;
+            return;
+        }
+        viewerBacklog.add(new QueuedOp(revision, json));
+    }
+
+    private void send(String sessionId, WebSocketSession ws, String json) {
+        if (!ws.isOpen()) {
+            return;
+        }
+        try {
+            ws.sendMessage(new TextMessage(json));
+        } catch (IOException e) {
+            log.warn("Failed to send message to session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    /**
+     * Moves every paged viewport across an edit at {@code pos} and returns the sessions whose
+     * window the edit lies entirely outside of. An insert at a window boundary counts as inside.
+     */
+    private Set<String> moveViewports(int pos, int delta) {
+        Set<String> outside = new HashSet<>();
+        participants.forEach((sid, participant) -> {
+            Participant.Viewport vp = participant.getViewport();
+            if (vp == null) {
+                return;
+            }
+            int newStart;
+            int newEnd;
+            boolean touchesWindow;
+            if (delta > 0) {
+                touchesWindow = pos >= vp.start() && pos <= vp.end();
+                newStart = pos < vp.start() ? vp.start() + delta : vp.start();
+                newEnd = pos <= vp.end() ? vp.end() + delta : vp.end();
+            } else {
+                int end = pos - delta;
+                touchesWindow = pos < vp.end() && end > vp.start();
+                newStart = mapThroughDelete(vp.start(), pos, end);
+                newEnd = mapThroughDelete(vp.end(), pos, end);
+            }
+            participant.setViewport(new Participant.Viewport(newStart, newEnd - newStart));
+            if (!touchesWindow) {
+                outside.add(sid);
             }
         });
+        return outside;
+    }
+
+    private static int mapThroughDelete(int offset, int from, int to) {
+        if (offset <= from) return offset;
+        if (offset < to) return from;
+        return offset - (to - from);
+    }
+
+    /**
+     * Char offset of the start of the given 0-based line, or the document length past the last line.
+     */
+    private int lineOffset(int line) {
+        int offset = 0;
+        for (int i = 0; i < line; i++) {
+            int next = currentContent.indexOf('\n', offset);
+            if (next < 0) {
+                return currentContent.length();
+            }
+            offset = next + 1;
+        }
+        return offset;
     }
 }
@@ -1,23 +1,35 @@
 package com.collabstack.editor.websocket;
 
+import com.collabstack.editor.config.WebSocketProperties;
 import com.collabstack.editor.dto.websocket.OperationMessage;
 import com.collabstack.editor.dto.websocket.PresenceMessage;
+import com.collabstack.editor.dto.websocket.ShiftMessage;
 import com.collabstack.editor.dto.websocket.SyncMessage;
+import com.collabstack.editor.dto.websocket.ViewportMessage;
+import com.collabstack.editor.dto.websocket.ViewportUnit;
+import com.collabstack.editor.dto.websocket.WindowSyncMessage;
+import com.collabstack.editor.entity.CollaboratorRole;
 import com.collabstack.editor.entity.Document;
+import com.collabstack.editor.entity.DocumentCollaborator;
 import com.collabstack.editor.repository.DocumentCollaboratorRepository;
 import com.collabstack.editor.repository.DocumentRepository;
 import com.collabstack.editor.repository.UserRepository;
 import com.collabstack.editor.security.JwtTokenProvider;
 import com.collabstack.editor.service.OperationPersistenceService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.UUID;
 
@@ -33,9 +45,17 @@ public class DocumentWebSocketHandler extends TextWebSocketHandler {
     private final CollaborationSessionManager sessionManager;
     private final OperationPersistenceService persistenceService;
     private final ObjectMapper objectMapper;
+    private final WebSocketProperties webSocketProperties;
+
+    @Value("${app.collab.viewport.max-window-chars:200000}")
+    private int maxWindowChars;
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        if (!sessionManager.isAccepting()) {
+            session.close(CloseStatus.SERVICE_RESTARTED);
+            return;
+        }
         URI uri = session.getUri();
         if (uri == null) {
             session.close(CloseStatus.BAD_DATA);
@@ -76,8 +96,11 @@ public class DocumentWebSocketHandler extends TextWebSocketHandler {
             return;
         }
         boolean isOwner = document.getOwner().getId().equals(userId);
-        boolean isCollaborator = collaboratorRepository.existsByDocument_IdAndUser_Id(documentId, userId);
-        if (!isOwner && !isCollaborator) {
+        CollaboratorRole role = isOwner ? CollaboratorRole.EDITOR
+                : collaboratorRepository.findByDocument_IdAndUser_Id(documentId, userId)
+                        .map(DocumentCollaborator::getRole)
+                        .orElse(null);
+        if (role == null) {
             session.close(new CloseStatus(1008, "Access denied"));
             return;
         }
@@ -91,21 +114,43 @@ public class DocumentWebSocketHandler extends TextWebSocketHandler {
         session.getAttributes().put("docId", documentId);
         session.getAttributes().put("userId", userId.toString());
         session.getAttributes().put("username", username);
+        session.getAttributes().put("role", role);
+
+        // All sends go through one serializing wrapper: handler threads and the viewer broadcaster share it.
+        // Underneath it, large frames are fragmented and (if the client opted in) compressed.
+        WebSocketProperties.Endpoint limits = webSocketProperties.endpoint("documents");
+        session.setTextMessageSizeLimit(limits.getTextMessageSizeLimit());
+        boolean compress = webSocketProperties.getCompression().isApplicationDeflate()
+                && "deflate-raw".equals(extractQueryParam(query, "compress"));
+        WebSocketSession framed = new FramingSessionDecorator(session, limits.getFragmentSize(),
+                compress ? webSocketProperties.getCompression().getThresholdBytes() : -1);
+        WebSocketSession outbound = new ConcurrentWebSocketSessionDecorator(
+                framed, limits.getSendTimeLimitMs(), limits.getSendBufferSizeLimit());
+        session.getAttributes().put("outbound", outbound);
 
         // Get or create collaborative session
         DocumentSession docSession = sessionManager.getOrCreate(
-                documentId, document.getContentSnapshot(), document.getCurrentRevision());
-        docSession.addSession(session.getId(), session, userId.toString(), username);
-
-        // Send SYNC to the new client
-        SyncMessage sync = new SyncMessage("SYNC", docSession.getCurrentContent(), docSession.getRevision());
-        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(sync)));
+                documentId, document.resolveContent(), document.getCurrentRevision());
+        docSession.addSession(session.getId(), outbound, userId.toString(), username, role);
+
+        // Send SYNC to the new client — only the requested window in paged mode (?mode=paged)
+        if ("paged".equals(extractQueryParam(query, "mode"))) {
+            ViewportUnit unit = "lines".equals(extractQueryParam(query, "unit")) ? ViewportUnit.LINES : ViewportUnit.CHARS;
+            int start = parseIntParam(query, "start", 0);
+            int length = parseIntParam(query, "length", maxWindowChars);
+            sendWindow(session, docSession, unit, start, length);
+        } else {
+            // Content and revision from one read: ops at or below it may still arrive and are dropped client-side
+            DocumentSession.Checkpoint checkpoint = docSession.checkpoint();
+            SyncMessage sync = new SyncMessage("SYNC", checkpoint.content(), checkpoint.revision());
+            outbound.sendMessage(new TextMessage(objectMapper.writeValueAsString(sync)));
+        }
 
         // Broadcast JOIN presence to all OTHER connected clients
         PresenceMessage join = new PresenceMessage("PRESENCE", userId.toString(), username, "JOIN");
         docSession.broadcastToOthers(objectMapper.writeValueAsString(join), session.getId());
 
-        log.info("User {} ({}) joined document {}", username, userId, documentId);
+        log.info("User {} ({}) joined document {} as {}", username, userId, documentId, role);
     }
 
     @Override
@@ -126,7 +171,13 @@ public class DocumentWebSocketHandler extends TextWebSocketHandler {
 
         OperationMessage op;
         try {
-            op = objectMapper.readValue(message.getPayload(), OperationMessage.class);
+            JsonNode node = objectMapper.readTree(message.getPayload());
+            if ("VIEWPORT".equals(node.path("type").asText())) {
+                ViewportMessage viewport = objectMapper.treeToValue(node, ViewportMessage.class);
+                sendWindow(session, docSession, viewport.unit(), viewport.start(), viewport.length());
+                return;
+            }
+            op = objectMapper.treeToValue(node, OperationMessage.class);
         } catch (Exception e) {
             log.warn("Failed to parse OperationMessage from session {}: {}", session.getId(), e.getMessage());
             return;
@@ -137,27 +188,30 @@ public class DocumentWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        // Apply operation to document session (server-authoritative OT)
-        String newContent = docSession.applyOperation(op);
-        long newRevision = docSession.getRevision();
+        // Viewers are read-only
+        if (session.getAttributes().get("role") == CollaboratorRole.VIEWER) {
+            log.debug("Dropped op from viewer {} on doc {}", username, documentId);
+            return;
+        }
+
+        // Apply operation to document session (server-authoritative OT); the enriched message to
+        // broadcast (with server userId/username) is built once the revision is assigned
+        DocumentSession.AppliedOperation applied = docSession.applyOperation(op, revision -> toJson(
+                new OperationMessage("OPERATION", op.opType(), op.position(), op.content(), op.length(),
+                        revision, userId, username)));
+        if (applied == null) {
+            // Sealed for shutdown — the client re-syncs from the flushed snapshot on reconnect
+            return;
+        }
+        long newRevision = applied.revision();
 
         // Persist operation asynchronously
         persistenceService.persistOperation(documentId, UUID.fromString(userId), op, newRevision);
 
-        // Build enriched operation message to broadcast (with server userId/username)
-        OperationMessage enriched = new OperationMessage(
-                "OPERATION",
-                op.opType(),
-                op.position(),
-                op.content(),
-                op.length(),
-                newRevision,
-                userId,
-                username
-        );
-
-        // Broadcast to all OTHER sessions
-        docSession.broadcastToOthers(objectMapper.writeValueAsString(enriched), session.getId());
+        // Broadcast to all OTHER sessions; paged sessions outside the edit only get a SHIFT
+        String shiftJson = applied.shiftOnly().isEmpty() ? null : objectMapper.writeValueAsString(
+                new ShiftMessage("SHIFT", applied.position(), applied.delta(), applied.totalLength(), newRevision));
+        docSession.broadcastOperation(applied, shiftJson, session.getId());
 
         log.debug("Op from {} on doc {}: {} @pos={} rev={}",
                 username, documentId, op.opType(), op.position(), newRevision);
@@ -180,6 +234,11 @@ public class DocumentWebSocketHandler extends TextWebSocketHandler {
 
         docSession.removeSession(session.getId());
 
+        // During shutdown the flusher owns snapshot writes
+        if (!sessionManager.isAccepting()) {
+            return;
+        }
+
         // Broadcast LEAVE to remaining clients
         if (userId != null && username != null) {
             PresenceMessage leave = new PresenceMessage("PRESENCE", userId, username, "LEAVE");
@@ -204,6 +263,44 @@ public class DocumentWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    private void sendWindow(WebSocketSession session, DocumentSession docSession,
+                            ViewportUnit unit, int start, int length) throws Exception {
+        ViewportUnit effectiveUnit = unit != null ? unit : ViewportUnit.CHARS;
+        int cappedLength = effectiveUnit == ViewportUnit.CHARS ? Math.min(length, maxWindowChars) : length;
+        WindowSyncMessage window = docSession.subscribeViewport(session.getId(), effectiveUnit, start, cappedLength);
+        if (window.windowLength() > maxWindowChars) {
+            // Line windows can resolve to more chars than allowed — trim and re-subscribe in chars
+            window = docSession.subscribeViewport(session.getId(), ViewportUnit.CHARS,
+                    window.windowStart(), maxWindowChars);
+        }
+        outbound(session).sendMessage(new TextMessage(objectMapper.writeValueAsString(window)));
+    }
+
+    private String toJson(Object message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private WebSocketSession outbound(WebSocketSession session) {
+        Object outbound = session.getAttributes().get("outbound");
+        return outbound instanceof WebSocketSession ws ? ws : session;
+    }
+
+    private int parseIntParam(String query, String paramName, int defaultValue) {
+        String value = extractQueryParam(query, paramName);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     private String extractQueryParam(String query, String paramName) {
         if (query == null || query.isEmpty()) {
             return null;
@@ -0,0 +1,97 @@
+package com.collabstack.editor.websocket;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Shapes outbound text messages on the wire:
+ * <ul>
+ *   <li>messages at or above the compression threshold are sent as raw-DEFLATE binary
+ *       messages (only for clients that opted in with {@code ?compress=deflate-raw});</li>
+ *   <li>anything larger than the fragment size is split into continuation frames,
+ *       so a multi-MB SYNC never has to go out as one frame.</li>
+ * </ul>
+ * Must sit underneath {@link org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator},
+ * which hands it one message at a time, so the fragments of a message are never interleaved.
+ */
+public class FramingSessionDecorator extends WebSocketSessionDecorator {
+
+    private final int fragmentSize;
+    private final int compressionThreshold;
+
+    /**
+     * @param compressionThreshold minimum UTF-8 size to compress, or a negative value to never compress
+     */
+    public FramingSessionDecorator(WebSocketSession delegate, int fragmentSize, int compressionThreshold) {
+        super(delegate);
+        this.fragmentSize = fragmentSize;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (!(message instanceof TextMessage text) || !text.isLast()) {
+            super.sendMessage(message);
+            return;
+        }
+        String payload = text.getPayload();
+        // UTF-8 is at least one byte per char, so short payloads can skip encoding entirely
+        if (compressionThreshold >= 0 && payload.length() >= compressionThreshold / 4) {
+            byte[] utf8 = payload.getBytes(StandardCharsets.UTF_8);
+            if (utf8.length >= compressionThreshold) {
+                sendCompressed(utf8);
+                return;
+            }
+        }
+        if (payload.length() <= fragmentSize) {
+            super.sendMessage(message);
+            return;
+        }
+        sendFragmented(payload);
+    }
+
+    private void sendFragmented(String payload) throws IOException {
+        int start = 0;
+        while (start < payload.length()) {
+            int end = Math.min(start + fragmentSize, payload.length());
+            // Never split a surrogate pair across frames — each partial frame is encoded separately
+            if (end < payload.length() && Character.isHighSurrogate(payload.charAt(end - 1))) {
+                end--;
+            }
+            super.sendMessage(new TextMessage(payload.substring(start, end), end == payload.length()));
+            start = end;
+        }
+    }
+
+    private void sendCompressed(byte[] utf8) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            // Hold one fragment back so the final frame can be flagged as last
+            byte[] pending = null;
+            while (!deflater.finished()) {
+                byte[] buffer = new byte[fragmentSize];
+                int written = deflater.deflate(buffer);
+                if (written == 0) {
+                    continue;
+                }
+                if (pending != null) {
+                    super.sendMessage(new BinaryMessage(pending, false));
+                }
+                pending = written == buffer.length ? buffer : Arrays.copyOf(buffer, written);
+            }
+            super.sendMessage(new BinaryMessage(pending != null ? pending : new byte[0], true));
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.collabstack.editor.websocket;
+
+import com.collabstack.editor.entity.CollaboratorRole;
+import lombok.Getter;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * One connected client of a {@link DocumentSession}.
+ * The viewport is only written under the owning DocumentSession's lock.
+ */
+@Getter
+class Participant {
+
+    // Thread-safe outbound wrapper — sends may come from handler threads and the viewer broadcaster
+    private final WebSocketSession webSocket;
+    private final DocumentSession.UserInfo userInfo;
+    private final CollaboratorRole role;
+
+    // null = full-document mode; otherwise the char window this client is subscribed to
+    private volatile Viewport viewport;
+
+    record Viewport(int start, int length) {
+        int end() {
+            return start + length;
+        }
+    }
+
+    Participant(WebSocketSession webSocket, DocumentSession.UserInfo userInfo, CollaboratorRole role) {
+        this.webSocket = webSocket;
+        this.userInfo = userInfo;
+        this.role = role;
+    }
+
+    void setViewport(Viewport viewport) {
+        this.viewport = viewport;
+    }
+
+    /**
+     * Full-document viewers share one batched frame per flush instead of per-op sends.
+     * Paged viewers stay on the direct path because their frames differ per window.
+     */
+    boolean isBatchedViewer() {
+        return role == CollaboratorRole.VIEWER && viewport == null;
+    }
+}
@@ -0,0 +1,180 @@
+package com.collabstack.editor.websocket;
+
+import com.collabstack.editor.service.OperationPersistenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flushes every live {@link DocumentSession} before the context goes down, so a rolling
+ * deploy never loses edits that were only held in memory.
+ * <ol>
+ *   <li>stop accepting connections and seal each session (no op is applied after its checkpoint)</li>
+ *   <li>wait for already queued @Async persistence (op log, snapshots of closed sessions)</li>
+ *   <li>write dirty snapshots as batched UPDATEs on a few parallel connections, within a deadline</li>
+ *   <li>close clients with 1012 so they reconnect to another instance</li>
+ * </ol>
+ * Stops in {@link #PHASE}: after default-phase lifecycle beans, before the web server's graceful
+ * shutdown.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SessionShutdownFlusher implements SmartLifecycle {
+
+    /**
+     * Lifecycles stop in descending phase order, each phase completing before the next. Beans in
+     * {@link SmartLifecycle#DEFAULT_PHASE} stop first; this runs after them and before
+     * {@link WebServerGracefulShutdownLifecycle#SMART_LIFECYCLE_PHASE}, so graceful shutdown, which
+     * waits for open connections, only starts once sessions are sealed, flushed and their clients
+     * closed. The web server itself stops in a lower phase still.
+     */
+    public static final int PHASE = WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE + 512;
+
+    private final CollaborationSessionManager sessionManager;
+    private final OperationPersistenceService persistenceService;
+
+    // Boot's applicationTaskExecutor, which backs @Async
+    private final ObjectProvider<ThreadPoolTaskExecutor> asyncExecutor;
+
+    @Value("${app.collab.shutdown.timeout-ms:20000}")
+    private long timeoutMs;
+
+    @Value("${app.collab.shutdown.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.collab.shutdown.parallelism:4}")
+    private int parallelism;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        long startedAt = System.currentTimeMillis();
+        long deadline = startedAt + timeoutMs;
+
+        sessionManager.stopAccepting();
+        List<DocumentSession> sessions = new ArrayList<>(sessionManager.getAll());
+        List<DocumentSession.Checkpoint> dirty = new ArrayList<>();
+        for (DocumentSession session : sessions) {
+            DocumentSession.Checkpoint checkpoint = session.seal();
+            if (session.isDirty()) {
+                dirty.add(checkpoint);
+            }
+        }
+
+        boolean drained = awaitPendingPersistence(deadline);
+
+        AtomicInteger flushed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long bytes = dirty.stream().mapToLong(c -> c.content().length()).sum();
+        if (!dirty.isEmpty()) {
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+                Thread thread = new Thread(r, "shutdown-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<CompletableFuture<Void>> batches = new ArrayList<>();
+                for (int from = 0; from < dirty.size(); from += batchSize) {
+                    List<DocumentSession.Checkpoint> batch = dirty.subList(from, Math.min(from + batchSize, dirty.size()));
+                    batches.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            persistenceService.saveSnapshots(batch);
+                            for (DocumentSession.Checkpoint c : batch) {
+                                DocumentSession session = sessionManager.get(c.documentId());
+                                if (session != null) {
+                                    session.markPersisted(c.revision());
+                                }
+                            }
+                            flushed.addAndGet(batch.size());
+                        } catch (Exception e) {
+                            failed.addAndGet(batch.size());
+                            log.error("Shutdown flush failed for {} documents: {}", batch.size(), e.getMessage());
+                        }
+                    }, pool));
+                }
+                CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new))
+                        .get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.error("Shutdown flush deadline of {} ms exceeded", timeoutMs);
+            } catch (Exception e) {
+                log.error("Shutdown flush interrupted: {}", e.getMessage());
+                Thread.currentThread().interrupt();
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        sessions.forEach(session -> session.closeAll(CloseStatus.SERVICE_RESTARTED));
+
+        List<String> unflushed = sessions.stream()
+                .filter(DocumentSession::isDirty)
+                .map(s -> s.getDocumentId() + "@" + s.getRevision())
+                .toList();
+        log.info("Shutdown flush: {} live sessions, {} dirty, {} flushed ({} chars), {} failed, " +
+                        "async queue drained: {}, {} ms",
+                sessions.size(), dirty.size(), flushed.get(), bytes, failed.get(), drained,
+                System.currentTimeMillis() - startedAt);
+        if (!unflushed.isEmpty()) {
+            log.error("Shutdown flush left {} documents unsaved: {}", unflushed.size(), unflushed);
+        }
+    }
+
+    /**
+     * Waits for the @Async executor to finish queued work, so a late snapshot from an earlier
+     * disconnect cannot overwrite the newer one written here.
+     */
+    private boolean awaitPendingPersistence(long deadline) {
+        ThreadPoolTaskExecutor executor = asyncExecutor.getIfUnique();
+        if (executor == null) {
+            return true;
+        }
+        try {
+            while (executor.getQueueSize() > 0 || executor.getActiveCount() > 0) {
+                if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                }
+                Thread.sleep(20);
+            }
+            return true;
+        } catch (IllegalStateException e) {
+            // Executor already torn down — nothing left to wait for
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
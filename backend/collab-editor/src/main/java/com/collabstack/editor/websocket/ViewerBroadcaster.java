@@ -0,0 +1,76 @@
+package com.collabstack.editor.websocket;
+
+import com.collabstack.editor.dto.websocket.SyncMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers ops to read-only viewers on a relaxed cadence from its own thread, so large
+ * audiences never add to an editor's per-keystroke latency.
+ * Each flush sends one pre-serialized frame per document:
+ * {"type":"BATCH","revision":&lt;last op's revision&gt;,"messages":[&lt;OPERATION&gt;, ...]},
+ * preceded by a SYNC when the backlog overflowed. Clients drop ops at or below their last SYNC's revision.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ViewerBroadcaster {
+
+    private final CollaborationSessionManager sessionManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.collab.viewers.flush-interval-ms:100}")
+    private long flushIntervalMs;
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "viewer-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    void flushAll() {
+        for (DocumentSession docSession : sessionManager.getAll()) {
+            try {
+                flush(docSession);
+            } catch (Exception e) {
+                log.warn("Viewer flush failed for document {}: {}", docSession.getDocumentId(), e.getMessage());
+            }
+        }
+    }
+
+    private void flush(DocumentSession docSession) throws Exception {
+        DocumentSession.ViewerBatch batch = docSession.drainViewerBacklog();
+        if (batch.resync() != null) {
+            SyncMessage sync = new SyncMessage("SYNC", batch.resync().content(), batch.resync().revision());
+            docSession.sendToBatchedViewers(objectMapper.writeValueAsString(sync));
+            log.info("Viewer backlog overflowed for document {} — re-synced viewers", docSession.getDocumentId());
+        }
+        if (batch.messages().isEmpty()) {
+            return;
+        }
+        // Messages are already JSON — splice them rather than re-serializing per flush
+        String frame = "{\"type\":\"BATCH\",\"revision\":" + batch.revision() + ",\"messages\":["
+                + String.join(",", batch.messages()) + "]}";
+        docSession.sendToBatchedViewers(frame);
+    }
+}
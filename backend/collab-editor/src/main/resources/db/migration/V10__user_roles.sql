@@ -0,0 +1,3 @@
+-- Operational endpoints (/actuator/** except health) require ADMIN. Self-registered users are
+-- always USER; promote an operator with: UPDATE users SET role = 'ADMIN' WHERE email = '...';
+ALTER TABLE users ADD COLUMN role VARCHAR(20) NOT NULL DEFAULT 'USER';
@@ -0,0 +1,26 @@
+-- Imported snapshots kept as the segments they were uploaded in, so indexing can stream them.
+-- substr() on content_snapshot cannot do that: in a multibyte encoding (UTF8) a character offset
+-- does not map to a byte offset, so every substr detoasts the value from its first byte and
+-- reading a document segment by segment costs O(n^2) I/O. Reading segment rows in order is linear.
+-- Any other write of the snapshot (editing, fork materialization) makes them stale; the trigger
+-- drops them and readers fall back to content_snapshot, which those writers already hold whole.
+CREATE TABLE document_snapshot_segments (
+    document_id UUID NOT NULL REFERENCES documents(id) ON DELETE CASCADE,
+    seq         INT NOT NULL,
+    segment     TEXT NOT NULL,
+    PRIMARY KEY (document_id, seq)
+);
+
+CREATE FUNCTION drop_stale_snapshot_segments() RETURNS trigger AS $$
+BEGIN
+    DELETE FROM document_snapshot_segments WHERE document_id = NEW.id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- ORM updates list every column; only a changed value invalidates the segments
+CREATE TRIGGER documents_snapshot_segments_stale
+    AFTER UPDATE OF content_snapshot ON documents
+    FOR EACH ROW
+    WHEN (OLD.content_snapshot IS DISTINCT FROM NEW.content_snapshot)
+    EXECUTE FUNCTION drop_stale_snapshot_segments();
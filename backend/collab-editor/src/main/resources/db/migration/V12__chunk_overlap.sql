@@ -0,0 +1,5 @@
+-- Leading chars of a chunk that repeat the end of the previous chunk, as decided by the chunker.
+-- The RAG context packer trims by it when joining neighbours; NULL (rows indexed before this
+-- column, or a chunk replaced on its own) means unknown, and such chunks are not joined.
+-- Filled in by the next re-index of each document.
+ALTER TABLE document_chunks ADD COLUMN overlap_chars INT;
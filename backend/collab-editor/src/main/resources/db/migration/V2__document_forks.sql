@@ -0,0 +1,12 @@
+-- Copy-on-write forks.
+-- A fork starts with content_snapshot NULL and reads both its content and its RAG index
+-- from content_source_id until either side is written; at that point the fork gets its own copy.
+-- DocumentService.delete hands a source's content to its forks before deleting it. SET NULL only
+-- covers deletes that bypass it (e.g. cascading from users): such forks are left empty, not blocking.
+ALTER TABLE documents ADD COLUMN content_source_id UUID REFERENCES documents(id) ON DELETE SET NULL;
+
+-- Lineage only (what the user forked from); survives divergence and source deletion
+ALTER TABLE documents ADD COLUMN forked_from_id UUID REFERENCES documents(id) ON DELETE SET NULL;
+
+CREATE INDEX idx_documents_content_source_id ON documents(content_source_id)
+    WHERE content_source_id IS NOT NULL;
@@ -0,0 +1,15 @@
+-- Full-text search over titles and snapshot content.
+-- search_vector is maintained by the application whenever a snapshot or title is written
+-- (not by a trigger, so forks can be indexed from the content they share).
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE documents ADD COLUMN search_vector TSVECTOR;
+
+CREATE INDEX idx_documents_search_vector ON documents USING GIN (search_vector);
+CREATE INDEX idx_documents_title_trgm ON documents USING GIN (title gin_trgm_ops);
+
+-- Backfill. Content is capped so very large documents stay under the 1MB tsvector limit.
+UPDATE documents d SET search_vector =
+    setweight(to_tsvector('english', coalesce(d.title, '')), 'A') ||
+    setweight(to_tsvector('english', left(coalesce(d.content_snapshot,
+        (SELECT s.content_snapshot FROM documents s WHERE s.id = d.content_source_id), ''), 500000)), 'B');
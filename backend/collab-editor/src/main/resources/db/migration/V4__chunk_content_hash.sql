@@ -0,0 +1,15 @@
+-- Incremental re-indexing: chunks are matched by content hash across snapshots,
+-- so only new or changed chunks are re-embedded.
+ALTER TABLE document_chunks ADD COLUMN content_hash VARCHAR(64);
+
+UPDATE document_chunks SET content_hash = encode(sha256(convert_to(content, 'UTF8')), 'hex');
+
+ALTER TABLE document_chunks ALTER COLUMN content_hash SET NOT NULL;
+
+CREATE INDEX idx_document_chunks_document_hash ON document_chunks(document_id, content_hash);
+
+-- Kept chunks are renumbered in the same transaction that inserts/deletes others;
+-- check (document_id, chunk_index) uniqueness at commit instead of per statement.
+ALTER TABLE document_chunks DROP CONSTRAINT document_chunks_document_id_chunk_index_key;
+ALTER TABLE document_chunks ADD CONSTRAINT document_chunks_document_id_chunk_index_key
+    UNIQUE (document_id, chunk_index) DEFERRABLE INITIALLY DEFERRED;
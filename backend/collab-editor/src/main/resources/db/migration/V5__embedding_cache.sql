@@ -0,0 +1,12 @@
+-- Embeddings keyed by SHA-256 of (model, dimensions, text), shared by all documents.
+-- Vectors are stored as little-endian float32 so the table does not depend on pgvector.
+CREATE TABLE embedding_cache (
+    cache_key    VARCHAR(64) PRIMARY KEY,
+    embedding    BYTEA NOT NULL,
+    dimensions   INT NOT NULL,
+    created_at   TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    last_used_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+-- LRU eviction scans oldest-first
+CREATE INDEX idx_embedding_cache_last_used ON embedding_cache(last_used_at);
@@ -0,0 +1,3 @@
+-- Bumped in the same transaction as every change to a document's chunks or vectors;
+-- RAG retrieval/answer caches key on it, so a re-index invalidates them implicitly.
+ALTER TABLE documents ADD COLUMN index_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,5 @@
+-- Lexical side of hybrid RAG retrieval: full-text index over chunk content, kept in sync by Postgres.
+ALTER TABLE document_chunks
+    ADD COLUMN search_vector TSVECTOR GENERATED ALWAYS AS (to_tsvector('english'::regconfig, content)) STORED;
+
+CREATE INDEX idx_document_chunks_search_vector ON document_chunks USING GIN (search_vector);
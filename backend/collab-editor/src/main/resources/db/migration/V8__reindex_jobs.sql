@@ -0,0 +1,20 @@
+-- Bulk re-index runs. Index documents (not sharing a fork source) are walked in id order and
+-- last_document_id is the checkpoint: every document up to it has been processed, so a run
+-- interrupted by a restart resumes right after it.
+CREATE TABLE reindex_jobs (
+    id               UUID PRIMARY KEY,
+    status           VARCHAR(20) NOT NULL,
+    rebuild          BOOLEAN NOT NULL DEFAULT FALSE,
+    parallelism      INT NOT NULL,
+    max_per_second   DOUBLE PRECISION NOT NULL,
+    last_document_id UUID,
+    total_documents  BIGINT NOT NULL,
+    processed        BIGINT NOT NULL DEFAULT 0,
+    failed           BIGINT NOT NULL DEFAULT 0,
+    created_at       TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    updated_at       TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    finished_at      TIMESTAMP WITH TIME ZONE
+);
+
+-- At most one job is running or paused at a time
+CREATE UNIQUE INDEX idx_reindex_jobs_active ON reindex_jobs ((true)) WHERE status IN ('RUNNING', 'PAUSED');
@@ -0,0 +1,14 @@
+-- Chunk text is stored once, in document_chunks. vector_store rows share the chunk's id and keep
+-- content NULL; searches join the text back by primary key. vector_store is created by the
+-- application (PgVectorStore) after migrations run, so a fresh database has nothing to clear here.
+-- The space is reused by new rows; VACUUM FULL vector_store returns it to the OS.
+DO $$
+BEGIN
+    IF to_regclass('vector_store') IS NOT NULL THEN
+        UPDATE vector_store v
+        SET content = NULL
+        FROM document_chunks c
+        WHERE c.id = v.id
+          AND v.content IS NOT NULL;
+    END IF;
+END $$;
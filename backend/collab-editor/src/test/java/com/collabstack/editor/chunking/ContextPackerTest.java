@@ -0,0 +1,100 @@
+package com.collabstack.editor.chunking;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextPackerTest {
+
+    private static final String DOCUMENT_ID = "7d4f6a52-3f0e-4d59-9d4e-1b3c2a1f0e11";
+
+    private static ContextPacker packer(int maxTokens) {
+        return new ContextPacker(maxTokens, new JTokkitTokenCountEstimator());
+    }
+
+    private static Document chunk(int chunkIndex, Integer overlapChars, String text) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("documentId", DOCUMENT_ID);
+        metadata.put("chunkIndex", chunkIndex);
+        if (overlapChars != null) {
+            metadata.put("overlapChars", overlapChars);
+        }
+        return new Document("chunk-" + chunkIndex, text, metadata);
+    }
+
+    @Test
+    void joinsNeighboursWithoutOverlapVerbatim() {
+        // A suffix/prefix match would take the shared "e" as overlap
+        ContextPacker.Packed packed = packer(1000).pack(List.of(chunk(0, 0, "the"), chunk(1, 0, "end")));
+
+        assertThat(packed.context()).isEqualTo("theend");
+        assertThat(packed.passages()).isEqualTo(1);
+    }
+
+    @Test
+    void trimsRepetitiveTextByTheStoredOverlap() {
+        // A longest suffix/prefix match would take "la la la " as overlap
+        ContextPacker.Packed packed = packer(1000).pack(List.of(
+                chunk(0, 0, "la la la la "), chunk(1, 3, "la la la lo ")));
+
+        assertThat(packed.context()).isEqualTo("la la la la la la lo ");
+    }
+
+    @Test
+    void chunkWithUnknownOverlapStartsANewPassage() {
+        ContextPacker.Packed packed = packer(1000).pack(List.of(chunk(0, 0, "first part"), chunk(1, null, "second part")));
+
+        assertThat(packed.passages()).isEqualTo(2);
+        assertThat(packed.context()).isEqualTo("first part" + ContextPacker.SEPARATOR + "second part");
+    }
+
+    @Test
+    void ordersPassagesByBestRankAndDropsContainedChunks() {
+        ContextPacker.Packed packed = packer(1000).pack(List.of(
+                chunk(5, 5, "story continues"),
+                chunk(4, 0, "the story"),
+                chunk(0, 0, "opening"),
+                chunk(9, 0, "story")));
+
+        assertThat(packed.context()).isEqualTo("the story continues" + ContextPacker.SEPARATOR + "opening");
+        assertThat(packed.chunks()).isEqualTo(3);
+    }
+
+    @Test
+    void keepsTheBestChunkAndSkipsLaterOnesOverBudget() {
+        String longText = "word ".repeat(200);
+        ContextPacker.Packed packed = packer(50).pack(List.of(
+                chunk(0, 0, longText), chunk(7, 0, "short"), chunk(3, 0, "another short one")));
+
+        assertThat(packed.context()).isEqualTo(longText);
+        assertThat(packed.chunks()).isEqualTo(1);
+    }
+
+    @Test
+    void packingEveryChunkRestoresTheChunkedText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("Sentence number ").append(i).append(" talks about item ").append(i * 7).append(". ");
+            if (i % 9 == 8) {
+                text.append("\n\n");
+            }
+        }
+        List<Document> chunks = new ArrayList<>();
+        new SemanticChunker(300, 60).chunks(text).forEachRemaining(c -> chunks.add(chunk(c.index(), c.overlap(), c.content())));
+        assertThat(chunks).hasSizeGreaterThan(10);
+        assertThat(chunks.subList(1, chunks.size()))
+                .allSatisfy(c -> assertThat((Integer) c.getMetadata().get("overlapChars")).isPositive());
+
+        ContextPacker.Packed packed = packer(1_000_000).pack(chunks);
+
+        assertThat(packed.passages()).isEqualTo(1);
+        assertThat(packed.context()).isEqualTo(text.toString());
+    }
+}
@@ -0,0 +1,146 @@
+package com.collabstack.editor.embedding;
+
+import com.collabstack.editor.exception.ProviderUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddingBatcherTest {
+
+    /**
+     * Embeds each text as {length, first char}, recording every request it receives.
+     */
+    private static final class StubModel implements EmbeddingModel {
+        final List<List<String>> requests = new CopyOnWriteArrayList<>();
+        final Function<List<String>, List<String>> beforeReturn;
+
+        StubModel(Function<List<String>, List<String>> beforeReturn) {
+            this.beforeReturn = beforeReturn;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<String> texts = beforeReturn.apply(request.getInstructions());
+            requests.add(texts);
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(vector(texts.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 2;
+        }
+    }
+
+    private static float[] vector(String text) {
+        return new float[] {text.length(), text.charAt(0)};
+    }
+
+    private static EmbeddingBatcher batcher(EmbeddingModel model, Duration maxWait, Duration resultTimeout) {
+        return new EmbeddingBatcher(model, 100, maxWait, 2, resultTimeout, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void mergesConcurrentCallersIntoOneRequestAndSplitsResults() throws Exception {
+        StubModel model = new StubModel(texts -> texts);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try (EmbeddingBatcher batcher = batcher(model, Duration.ofMillis(500), Duration.ofSeconds(5))) {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<List<float[]>> first = callers.submit(() -> {
+                start.await();
+                return batcher.embed(List.of("a", "bb"), null);
+            });
+            Future<List<float[]>> second = callers.submit(() -> {
+                start.await();
+                return batcher.embed(List.of("ccc", "dddd", "eeeee"), null);
+            });
+            start.countDown();
+
+            List<float[]> firstVectors = first.get(5, TimeUnit.SECONDS);
+            List<float[]> secondVectors = second.get(5, TimeUnit.SECONDS);
+
+            assertThat(model.requests).hasSize(1);
+            assertThat(model.requests.get(0)).containsExactlyInAnyOrder("a", "bb", "ccc", "dddd", "eeeee");
+            assertThat(firstVectors).containsExactly(vector("a"), vector("bb"));
+            assertThat(secondVectors).containsExactly(vector("ccc"), vector("dddd"), vector("eeeee"));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void splitsRequestsAtMaxBatchSize() {
+        StubModel model = new StubModel(texts -> texts);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            texts.add("text-" + i);
+        }
+        try (EmbeddingBatcher batcher = batcher(model, Duration.ofMillis(10), Duration.ofSeconds(5))) {
+            List<float[]> vectors = batcher.embed(texts, null);
+
+            assertThat(model.requests).extracting(List::size).containsExactlyInAnyOrder(100, 100, 50);
+            for (int i = 0; i < texts.size(); i++) {
+                assertThat(vectors.get(i)).isEqualTo(vector(texts.get(i)));
+            }
+        }
+    }
+
+    @Test
+    void failedBatchFailsEveryCaller() {
+        StubModel model = new StubModel(texts -> {
+            throw new IllegalStateException("provider rejected the request");
+        });
+        try (EmbeddingBatcher batcher = batcher(model, Duration.ofMillis(10), Duration.ofSeconds(5))) {
+            assertThatThrownBy(() -> batcher.embed(List.of("a", "b"), null))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("provider rejected the request");
+        }
+    }
+
+    @Test
+    void callerStopsWaitingAfterResultTimeout() {
+        CountDownLatch release = new CountDownLatch(1);
+        StubModel model = new StubModel(texts -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return texts;
+        });
+        try (EmbeddingBatcher batcher = batcher(model, Duration.ofMillis(10), Duration.ofMillis(200))) {
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> batcher.embed(List.of("a"), null))
+                    .isInstanceOf(ProviderUnavailableException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.collabstack.editor.resilience;
+
+import com.collabstack.editor.exception.ProviderUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadTest {
+
+    private static final int THRESHOLD = 3;
+
+    private final CircuitBreaker breaker = new CircuitBreaker("test", THRESHOLD, Duration.ofMinutes(1));
+
+    private Bulkhead bulkhead() {
+        return new Bulkhead("test", 2, Duration.ofMillis(100), Duration.ofSeconds(5), breaker, new SimpleMeterRegistry());
+    }
+
+    private static void callFailing(Bulkhead bulkhead, RuntimeException error) {
+        assertThatThrownBy(() -> bulkhead.call(() -> {
+            throw error;
+        })).isSameAs(error);
+    }
+
+    @Test
+    void rejectedRequestsDoNotOpenTheCircuit() {
+        try (Bulkhead bulkhead = bulkhead()) {
+            for (int i = 0; i < THRESHOLD * 2; i++) {
+                callFailing(bulkhead, new NonTransientAiException("400 - invalid input"));
+                callFailing(bulkhead, HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "bad", null, null, null));
+                callFailing(bulkhead, new IllegalArgumentException("validation failed"));
+            }
+            assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+            assertThat(bulkhead.call(() -> "ok")).isEqualTo("ok");
+        }
+    }
+
+    @Test
+    void serverErrorsAndIoErrorsOpenTheCircuit() {
+        try (Bulkhead bulkhead = bulkhead()) {
+            callFailing(bulkhead, new TransientAiException("503 - overloaded"));
+            callFailing(bulkhead, HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "bad", null, null, null));
+            callFailing(bulkhead, new ResourceAccessException("I/O error", new IOException("connection reset")));
+
+            assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+            assertThatThrownBy(() -> bulkhead.call(() -> "ok")).isInstanceOf(ProviderUnavailableException.class);
+        }
+    }
+
+    @Test
+    void callTimingOutWhileQueuedGivesItsSlotBack() throws Exception {
+        // Worker threads only start running tasks once released, so the first calls time out queued
+        CountDownLatch workersReleased = new CountDownLatch(1);
+        ThreadFactory stalledThreads = r -> {
+            Thread thread = new Thread(() -> {
+                try {
+                    workersReleased.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                r.run();
+            });
+            thread.setDaemon(true);
+            return thread;
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try (Bulkhead bulkhead = new Bulkhead("test", 2, Duration.ofMillis(100), Duration.ofMillis(100), breaker,
+                registry, stalledThreads)) {
+            for (int i = 0; i < 2; i++) {
+                assertThatThrownBy(() -> bulkhead.call(() -> "late")).isInstanceOf(ProviderUnavailableException.class);
+            }
+            assertThat(registry.get("provider.bulkhead.active").gauge().value()).isZero();
+
+            workersReleased.countDown();
+            assertThat(bulkhead.call(() -> "ok")).isEqualTo("ok");
+            assertThat(registry.get("provider.bulkhead.active").gauge().value()).isZero();
+        }
+    }
+
+    @Test
+    void streamsClassifyErrorsTheSameWay() {
+        try (Bulkhead bulkhead = bulkhead()) {
+            for (int i = 0; i < THRESHOLD; i++) {
+                Flux<String> rejected = bulkhead.stream(() -> Flux.error(new NonTransientAiException("400")));
+                assertThatThrownBy(rejected::blockLast).isInstanceOf(NonTransientAiException.class);
+            }
+            assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+            for (int i = 0; i < THRESHOLD; i++) {
+                Flux<String> failed = bulkhead.stream(() -> Flux.error(new TransientAiException("500")));
+                assertThatThrownBy(failed::blockLast).isInstanceOf(TransientAiException.class);
+            }
+            assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        }
+    }
+}
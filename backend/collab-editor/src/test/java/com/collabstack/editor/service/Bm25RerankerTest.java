@@ -0,0 +1,52 @@
+package com.collabstack.editor.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Bm25RerankerTest {
+
+    private final Bm25Reranker reranker = new Bm25Reranker(true, 16, 0.35, 0.75, 1.2, 0.75);
+
+    private static Document lexical(String id, String text) {
+        return new Document(id, text, Map.of());
+    }
+
+    private static Document vector(String id, String text, double similarity) {
+        return Document.builder().id(id).text(text).metadata(Map.of()).score(similarity).build();
+    }
+
+    @Test
+    void dropsCandidatesWithoutTermOverlap() {
+        List<Document> result = reranker.rerank("invoice retention policy", List.of(
+                lexical("a", "Invoices follow the retention policy of seven years."),
+                lexical("b", "The office closes at noon on Fridays."),
+                lexical("c", "Retention of invoices is audited yearly.")), 5);
+
+        assertThat(result).extracting(Document::getId).containsExactly("a", "c");
+    }
+
+    @Test
+    void keepsSimilarVectorHitsThatShareNoWords() {
+        List<Document> result = reranker.rerank("invoice retention policy", List.of(
+                lexical("a", "Invoices follow the retention policy of seven years."),
+                vector("paraphrase", "Billing records must be stored for seven years.", 0.86),
+                vector("unrelated", "The office closes at noon on Fridays.", 0.41)), 5);
+
+        assertThat(result).extracting(Document::getId).containsExactly("a", "paraphrase");
+    }
+
+    @Test
+    void ordersByTheBetterOfBm25AndVectorSimilarity() {
+        List<Document> result = reranker.rerank("invoice retention policy", List.of(
+                lexical("weak", "An invoice was sent."),
+                vector("paraphrase", "Billing records must be stored for seven years.", 0.93),
+                lexical("strong", "Invoice retention policy: keep every invoice under the retention policy.")), 5);
+
+        assertThat(result).extracting(Document::getId).containsExactly("strong", "paraphrase", "weak");
+    }
+}
@@ -0,0 +1,54 @@
+package com.collabstack.editor.service;
+
+import com.collabstack.editor.dto.response.IndexingStatusResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class IndexingSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EmbeddingService embeddingService = mock(EmbeddingService.class);
+    private final IndexingScheduler scheduler = new IndexingScheduler(meterRegistry);
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        scheduler.stop();
+    }
+
+    @Test
+    void failedRunIsCountedAndQueuedAgain() throws InterruptedException {
+        ReflectionTestUtils.setField(scheduler, "embeddingService", embeddingService);
+        ReflectionTestUtils.setField(scheduler, "workers", 1);
+        ReflectionTestUtils.setField(scheduler, "dispatchIntervalMs", 10L);
+        ReflectionTestUtils.setField(scheduler, "retryDelayMs", 60_000L);
+        doThrow(new IllegalStateException("vector store down"))
+                .when(embeddingService).indexStoredDocument(any(), anyBoolean());
+        scheduler.start();
+        UUID documentId = UUID.randomUUID();
+
+        scheduler.schedule(documentId, IndexingPriority.HIGH);
+
+        verify(embeddingService, timeout(5000)).indexStoredDocument(documentId, false);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!scheduler.status(documentId).state().equals("PENDING") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        IndexingStatusResponse status = scheduler.status(documentId);
+        assertThat(status.state()).isEqualTo("PENDING");
+        assertThat(status.dueAt()).isAfter(Instant.now().plusSeconds(30));
+        assertThat(meterRegistry.counter("indexing.runs.failed").count()).isEqualTo(1);
+    }
+}
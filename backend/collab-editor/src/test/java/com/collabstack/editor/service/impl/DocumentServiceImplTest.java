@@ -0,0 +1,74 @@
+package com.collabstack.editor.service.impl;
+
+import com.collabstack.editor.entity.Document;
+import com.collabstack.editor.entity.User;
+import com.collabstack.editor.mapper.DocumentMapper;
+import com.collabstack.editor.repository.DocumentCollaboratorRepository;
+import com.collabstack.editor.repository.DocumentRepository;
+import com.collabstack.editor.repository.DocumentSearchRepository;
+import com.collabstack.editor.repository.DocumentSnapshotRepository;
+import com.collabstack.editor.repository.UserRepository;
+import com.collabstack.editor.service.EmbeddingService;
+import com.collabstack.editor.service.IndexingScheduler;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentServiceImplTest {
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final EmbeddingService embeddingService = mock(EmbeddingService.class);
+    private final DocumentServiceImpl service = new DocumentServiceImpl(documentRepository,
+            mock(DocumentSearchRepository.class), mock(DocumentSnapshotRepository.class),
+            mock(DocumentCollaboratorRepository.class), mock(UserRepository.class), mock(DocumentMapper.class),
+            mock(IndexingScheduler.class));
+
+    private final UUID ownerId = UUID.randomUUID();
+    private final Document source = Document.builder()
+            .id(UUID.randomUUID())
+            .owner(User.builder().id(ownerId).build())
+            .contentSnapshot("shared text")
+            .build();
+
+    DocumentServiceImplTest() {
+        ReflectionTestUtils.setField(service, "embeddingService", embeddingService);
+        when(documentRepository.findById(source.getId())).thenReturn(Optional.of(source));
+    }
+
+    @Test
+    void deletingASourceHandsItsContentAndIndexToForksFirst() {
+        UUID fork = UUID.randomUUID();
+        when(documentRepository.findForkIdsSharing(source.getId())).thenReturn(List.of(fork));
+
+        service.delete(source.getId(), ownerId);
+
+        InOrder order = inOrder(documentRepository, embeddingService);
+        order.verify(documentRepository).lockById(source.getId());
+        order.verify(documentRepository).findForkIdsSharing(source.getId());
+        order.verify(documentRepository).materializeForks(source.getId());
+        order.verify(embeddingService).copyIndex(source.getId(), fork);
+        order.verify(documentRepository).delete(source);
+        order.verify(embeddingService).deleteDocumentChunks(source.getId());
+    }
+
+    @Test
+    void deletingADocumentWithoutForksMaterializesNothing() {
+        when(documentRepository.findForkIdsSharing(source.getId())).thenReturn(List.of());
+
+        service.delete(source.getId(), ownerId);
+
+        verify(documentRepository, never()).materializeForks(any());
+        verify(documentRepository).delete(source);
+    }
+}
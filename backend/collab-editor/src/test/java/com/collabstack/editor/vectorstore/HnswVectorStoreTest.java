@@ -0,0 +1,249 @@
+package com.collabstack.editor.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswVectorStoreTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @TempDir
+    Path directory;
+
+    // Stands in for document_chunks: chunk texts by id
+    private final Map<String, String> storedTexts = new ConcurrentHashMap<>();
+
+    /**
+     * Embeds each text as a random vector seeded by the text, so equal texts get equal vectors.
+     */
+    private static final class StubModel implements EmbeddingModel {
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> texts = request.getInstructions();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(vector(texts.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return DIMENSIONS;
+        }
+    }
+
+    private static float[] vector(String text) {
+        return randomVector(new Random(text.hashCode()));
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private HnswVectorStore store(int maxLoadedDocuments) {
+        StubModel model = new StubModel();
+        HnswVectorStore.ChunkTexts chunkTexts = ids -> {
+            Map<String, String> texts = new HashMap<>();
+            ids.stream().filter(storedTexts::containsKey).forEach(id -> texts.put(id, storedTexts.get(id)));
+            return texts;
+        };
+        return new HnswVectorStore(model, model, chunkTexts, directory, DIMENSIONS, maxLoadedDocuments, 10, 16, 100, 64);
+    }
+
+    private Document chunk(UUID documentId, String id, int chunkIndex, String text) {
+        storedTexts.put(id, text);
+        return Document.builder()
+                .id(id)
+                .text(text)
+                .metadata(Map.of("documentId", documentId.toString(), "chunkIndex", chunkIndex))
+                .build();
+    }
+
+    private static List<Document> search(HnswVectorStore store, UUID documentId, String query, int topK) {
+        return store.similaritySearch(SearchRequest.builder()
+                .query(query)
+                .topK(topK)
+                .similarityThresholdAll()
+                .filterExpression(new FilterExpressionBuilder().eq("documentId", documentId.toString()).build())
+                .build());
+    }
+
+    @Test
+    void graphSearchRecallAgainstExactSearch() {
+        Random random = new Random(42);
+        HnswGraph graph = new HnswGraph(DIMENSIONS, 16, 100);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            float[] vector = randomVector(random);
+            vectors.add(normalized(vector));
+            graph.put("v" + i, i, vector);
+        }
+
+        int k = 10;
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = normalized(randomVector(random));
+            Set<Integer> exact = new HashSet<>(IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble(i -> -dot(query, vectors.get(i))))
+                    .limit(k)
+                    .toList());
+            for (HnswGraph.Hit hit : graph.search(query, k, 64, -1)) {
+                if (exact.contains(graph.chunkIndex(hit.node()))) {
+                    hits++;
+                }
+            }
+        }
+        assertThat(hits / (double) (queries * k)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void graphRoundTripsThroughItsFileFormat() throws Exception {
+        Random random = new Random(7);
+        HnswGraph graph = new HnswGraph(DIMENSIONS, 16, 100);
+        for (int i = 0; i < 2000; i++) {
+            graph.put("v" + i, i, randomVector(random));
+        }
+        graph.remove("v3");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        graph.write(new DataOutputStream(bytes));
+        HnswGraph read = HnswGraph.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(read.liveCount()).isEqualTo(graph.liveCount());
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random);
+            List<HnswGraph.Hit> expected = graph.search(query, 10, 64, -1);
+            List<HnswGraph.Hit> actual = read.search(query, 10, 64, -1);
+            assertThat(actual).extracting(hit -> read.id(hit.node()))
+                    .containsExactlyElementsOf(expected.stream().map(hit -> graph.id(hit.node())).toList());
+        }
+    }
+
+    @Test
+    void evictedAndReopenedDocumentsKeepTheirVectors() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        HnswVectorStore store = store(1);
+        store.add(List.of(chunk(first, "a", 0, "alpha"), chunk(first, "b", 1, "beta")));
+        // Loading the second document evicts the first
+        store.add(List.of(chunk(second, "c", 0, "gamma")));
+
+        assertThat(search(store, first, "alpha", 1)).extracting(Document::getId).containsExactly("a");
+        assertThat(search(store, first, "alpha", 1)).extracting(Document::getText).containsExactly("alpha");
+
+        HnswVectorStore reopened = store(1);
+        assertThat(search(reopened, first, "beta", 1)).extracting(Document::getId).containsExactly("b");
+        assertThat(search(reopened, second, "gamma", 1)).extracting(Document::getId).containsExactly("c");
+        assertThat(search(reopened, second, "gamma", 1).get(0).getMetadata()).containsEntry("chunkIndex", 0);
+    }
+
+    @Test
+    void deleteByFilterRemovesTheIndexAndLaterWritesStartFresh() {
+        UUID documentId = UUID.randomUUID();
+        HnswVectorStore store = store(10);
+        store.add(List.of(chunk(documentId, "a", 0, "alpha"), chunk(documentId, "b", 1, "beta")));
+
+        store.delete(new FilterExpressionBuilder().eq("documentId", documentId.toString()).build());
+
+        assertThat(Files.exists(directory.resolve(documentId + ".hnsw"))).isFalse();
+        assertThat(search(store, documentId, "alpha", 5)).isEmpty();
+
+        store.add(List.of(chunk(documentId, "c", 0, "gamma")));
+        assertThat(search(store(10), documentId, "gamma", 5)).extracting(Document::getId).containsExactly("c");
+    }
+
+    @Test
+    void concurrentWritesUnderEvictionAreNotLost() throws Exception {
+        List<UUID> documents = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        HnswVectorStore store = store(1);
+        ExecutorService writers = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < 6; w++) {
+                int writer = w;
+                futures.add(writers.submit(() -> {
+                    for (int i = 0; i < 40; i++) {
+                        UUID documentId = documents.get((writer + i) % documents.size());
+                        String id = "w" + writer + "-" + i;
+                        store.add(List.of(chunk(documentId, id, i, id)));
+                        search(store, documents.get(i % documents.size()), id, 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        // Each chunk's text is its id, so it is its own nearest neighbour
+        HnswVectorStore reopened = store(3);
+        for (int writer = 0; writer < 6; writer++) {
+            for (int i = 0; i < 40; i++) {
+                String id = "w" + writer + "-" + i;
+                assertThat(search(reopened, documents.get((writer + i) % documents.size()), id, 1))
+                        .extracting(Document::getId).containsExactly(id);
+            }
+        }
+    }
+
+    private static float[] normalized(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,72 @@
+package com.collabstack.editor.websocket;
+
+import com.collabstack.editor.dto.websocket.OperationMessage;
+import com.collabstack.editor.dto.websocket.OperationType;
+import com.collabstack.editor.entity.CollaboratorRole;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class DocumentSessionTest {
+
+    private static OperationMessage insert(String text) {
+        return new OperationMessage("OPERATION", OperationType.INSERT, 0, text, 0, 0L, "user", "user");
+    }
+
+    @Test
+    void viewersReceiveConcurrentOpsInRevisionOrderAcrossFlushes() throws Exception {
+        DocumentSession session = new DocumentSession(UUID.randomUUID(), "", 0);
+        session.addSession("viewer", mock(WebSocketSession.class), "viewer", "viewer", CollaboratorRole.VIEWER);
+
+        int writers = 4;
+        int opsPerWriter = 2_000;
+        List<Long> delivered = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < opsPerWriter; i++) {
+                        session.applyOperation(insert("x"), String::valueOf);
+                    }
+                }));
+            }
+            while (!futures.stream().allMatch(Future::isDone)) {
+                session.drainViewerBacklog().messages().forEach(json -> delivered.add(Long.parseLong(json)));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        session.drainViewerBacklog().messages().forEach(json -> delivered.add(Long.parseLong(json)));
+
+        assertThat(delivered).hasSize(writers * opsPerWriter).isSorted();
+        assertThat(delivered.get(delivered.size() - 1)).isEqualTo(session.getRevision());
+    }
+
+    @Test
+    void opsAreOnlyQueuedWhileAFullDocumentViewerIsConnected() {
+        DocumentSession session = new DocumentSession(UUID.randomUUID(), "", 0);
+        session.applyOperation(insert("a"), String::valueOf);
+        session.addSession("viewer", mock(WebSocketSession.class), "viewer", "viewer", CollaboratorRole.VIEWER);
+        session.applyOperation(insert("b"), String::valueOf);
+
+        DocumentSession.ViewerBatch batch = session.drainViewerBacklog();
+
+        assertThat(batch.messages()).containsExactly("2");
+        assertThat(batch.revision()).isEqualTo(2);
+        assertThat(batch.resync()).isNull();
+    }
+}
@@ -0,0 +1,63 @@
+package com.collabstack.editor.websocket;
+
+import com.collabstack.editor.service.OperationPersistenceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class SessionShutdownFlusherTest {
+
+    /**
+     * Records when it is stopped, in a given phase.
+     */
+    private record Recorder(String name, int phase, List<String> stopped) implements SmartLifecycle {
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+            stopped.add(name);
+        }
+
+        @Override
+        public boolean isRunning() {
+            return true;
+        }
+
+        @Override
+        public int getPhase() {
+            return phase;
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushesAfterDefaultPhaseBeansAndBeforeGracefulShutdown() {
+        List<String> stopped = new CopyOnWriteArrayList<>();
+        CollaborationSessionManager sessionManager = mock(CollaborationSessionManager.class);
+        doAnswer(invocation -> stopped.add("flusher")).when(sessionManager).stopAccepting();
+        SessionShutdownFlusher flusher = new SessionShutdownFlusher(sessionManager,
+                mock(OperationPersistenceService.class), mock(ObjectProvider.class));
+
+        try (GenericApplicationContext context = new GenericApplicationContext()) {
+            context.registerBean("gracefulShutdown", Recorder.class,
+                    () -> new Recorder("gracefulShutdown", WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE, stopped));
+            context.registerBean("flusher", SessionShutdownFlusher.class, () -> flusher);
+            context.registerBean("defaultPhase", Recorder.class,
+                    () -> new Recorder("defaultPhase", SmartLifecycle.DEFAULT_PHASE, stopped));
+            context.refresh();
+        }
+
+        assertThat(stopped).containsExactly("defaultPhase", "flusher", "gracefulShutdown");
+    }
+}
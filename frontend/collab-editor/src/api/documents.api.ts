@@ -1,4 +1,5 @@
 import client from './client';
+import { useAuthStore } from '../store/useAuthStore';
 import type { ApiResponse } from '../types/common.types';
 import type {
   DocumentResponse,
@@ -6,17 +7,32 @@ import type {
   CollaboratorResponse,
   ChatRequest,
   ChatResponse,
+  ChatStreamHandlers,
+  DocumentSearchResponse,
+  SemanticSearchResponse,
 } from '../types/document.types';
 
 export const getDocuments = (): Promise<DocumentResponse[]> =>
   client.get<ApiResponse<DocumentResponse[]>>('/documents').then(r => r.data.data);
 
+export const searchDocuments = (q: string, cursor?: string, limit = 20): Promise<DocumentSearchResponse> =>
+  client.get<ApiResponse<DocumentSearchResponse>>('/documents/search', { params: { q, cursor, limit } })
+    .then(r => r.data.data);
+
+export const semanticSearch = (query: string, cursor?: string, limit = 20): Promise<SemanticSearchResponse> =>
+  client.post<ApiResponse<SemanticSearchResponse>>('/search/semantic', { query, cursor, limit })
+    .then(r => r.data.data);
+
 export const createDocument = (req: DocumentCreateRequest): Promise<DocumentResponse> =>
   client.post<ApiResponse<DocumentResponse>>('/documents', req).then(r => r.data.data);
 
 export const getDocument = (id: string): Promise<DocumentResponse> =>
   client.get<ApiResponse<DocumentResponse>>(`/documents/${id}`).then(r => r.data.data);
 
+// Metadata and content length only — lets the editor choose paged mode before downloading the content
+export const getDocumentSummary = (id: string): Promise<DocumentResponse> =>
+  client.get<ApiResponse<DocumentResponse>>(`/documents/${id}/summary`).then(r => r.data.data);
+
 export const updateTitle = (id: string, title: string): Promise<DocumentResponse> =>
   client.put<ApiResponse<DocumentResponse>>(`/documents/${id}/title`, { title }).then(r => r.data.data);
 
@@ -27,4 +43,58 @@ export const addCollaborator = (id: string, email: string, role: string): Promis
   client.post<ApiResponse<CollaboratorResponse>>(`/documents/${id}/collaborators`, { email, role }).then(r => r.data.data);
 
 export const chatWithDocument = (id: string, req: ChatRequest): Promise<ChatResponse> =>
-  client.post<ApiResponse<ChatResponse>>(`/documents/${id}/chat`, req).then(r => r.data.data);
\ No newline at end of file
+  client.post<ApiResponse<ChatResponse>>(`/documents/${id}/chat`, req).then(r => r.data.data);
+
+/**
+ * Streams an answer over Server-Sent Events: sources arrive first, then answer tokens.
+ * Aborting the signal closes the connection, which cancels generation on the server.
+ */
+export const streamChatWithDocument = async (
+  id: string,
+  req: ChatRequest,
+  handlers: ChatStreamHandlers,
+  signal?: AbortSignal,
+): Promise<void> => {
+  const token = useAuthStore.getState().token;
+  const res = await fetch(`${import.meta.env.VITE_API_BASE_URL}/documents/${id}/chat/stream`, {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+      Accept: 'text/event-stream',
+      ...(token ? { Authorization: `Bearer ${token}` } : {}),
+    },
+    body: JSON.stringify(req),
+    signal,
+  });
+  if (!res.ok || !res.body) {
+    throw new Error(`Chat stream failed with status ${res.status}`);
+  }
+
+  const reader = res.body.pipeThrough(new TextDecoderStream()).getReader();
+  let buffer = '';
+  for (;;) {
+    const { value, done } = await reader.read();
+    if (done) return;
+    buffer += value;
+    let sep: number;
+    while ((sep = buffer.indexOf('\n\n')) >= 0) {
+      const frame = buffer.slice(0, sep);
+      buffer = buffer.slice(sep + 2);
+      let event = 'message';
+      const data: string[] = [];
+      for (const line of frame.split('\n')) {
+        if (line.startsWith('event:')) event = line.slice(6).trim();
+        else if (line.startsWith('data:')) data.push(line.slice(5).replace(/^ /, ''));
+      }
+      const payload = data.join('\n');
+      switch (event) {
+        case 'sources': handlers.onSources?.(JSON.parse(payload)); break;
+        // Text events carry {"text": ...}, keeping a token's leading space intact
+        case 'token':
+        case 'answer': handlers.onToken(JSON.parse(payload).text); break;
+        case 'error': handlers.onError?.(JSON.parse(payload).text); break;
+        case 'done': return;
+      }
+    }
+  }
+};
@@ -1,53 +1,171 @@
 import { useState, useEffect, useRef, useCallback } from 'react';
-import type { OperationMessage } from '../types/document.types';
+import type {
+  DocumentWindow,
+  OperationMessage,
+  ShiftMessage,
+  ViewportRequest,
+  WindowSyncMessage,
+} from '../types/document.types';
 import { useAuthStore } from '../store/useAuthStore';
 import { useDocumentStore } from '../store/useDocumentStore';
 
 interface UseDocumentWebSocketReturn {
   isConnected: boolean;
   sendOperation: (op: OperationMessage) => void;
+  // Paged mode only: the subscribed window, and a way to move it (answered with SYNC_WINDOW)
+  docWindow: DocumentWindow | null;
+  setViewport: (viewport: ViewportRequest) => void;
 }
 
+type ServerMessage = OperationMessage | WindowSyncMessage | ShiftMessage;
+
+/**
+ * Applies an op the server sent because it touches the window, mirroring how the server moves
+ * the window: inserts inside it grow it, deletes remove the overlapping part.
+ */
+const applyToWindow = (win: DocumentWindow, op: OperationMessage): DocumentWindow => {
+  const pos = op.position ?? 0;
+  const windowEnd = win.windowStart + win.windowLength;
+  if (op.opType === 'INSERT' && op.content) {
+    const at = Math.min(Math.max(pos - win.windowStart, 0), win.content.length);
+    return {
+      ...win,
+      content: win.content.slice(0, at) + op.content + win.content.slice(at),
+      windowLength: win.windowLength + op.content.length,
+      totalLength: win.totalLength + op.content.length,
+      revision: op.clientRevision ?? win.revision,
+    };
+  }
+  if (op.opType === 'DELETE' && op.length) {
+    const end = Math.min(pos + op.length, win.totalLength);
+    const from = Math.max(pos, win.windowStart);
+    const to = Math.min(end, windowEnd);
+    const removed = Math.max(to - from, 0);
+    return {
+      ...win,
+      content: win.content.slice(0, from - win.windowStart) + win.content.slice(Math.max(to, from) - win.windowStart),
+      windowStart: Math.min(win.windowStart, pos),
+      windowLength: win.windowLength - removed,
+      totalLength: win.totalLength - (end - pos),
+      revision: op.clientRevision ?? win.revision,
+    };
+  }
+  return win;
+};
+
+/**
+ * Moves the window across an edit outside of it (SHIFT): only an edit before it moves it.
+ */
+const applyShift = (win: DocumentWindow, shift: ShiftMessage): DocumentWindow => ({
+  ...win,
+  windowStart: shift.position < win.windowStart ? win.windowStart + shift.delta : win.windowStart,
+  totalLength: shift.totalLength,
+  revision: shift.revision,
+});
+
+/**
+ * @param paged subscribe to this window only (?mode=paged) instead of the whole document;
+ *              ops outside it arrive as SHIFT and onRemoteOperation/onSync are not called
+ */
 export const useDocumentWebSocket = (
   documentId: string,
-  onRemoteOperation: (op: OperationMessage) => void
+  onRemoteOperation: (op: OperationMessage) => void,
+  onSync: (content: string, revision: number) => void,
+  paged?: ViewportRequest
 ): UseDocumentWebSocketReturn => {
   const [isConnected, setIsConnected] = useState(false);
+  const [docWindow, setDocWindow] = useState<DocumentWindow | null>(null);
   const socketRef = useRef<WebSocket | null>(null);
   const token = useAuthStore((s) => s.token);
   const { addConnectedUser, removeConnectedUser, setConnectedUsers } = useDocumentStore();
+  // Only the initial window is part of the URL; later moves go through setViewport
+  const initialViewport = useRef(paged);
+  initialViewport.current = paged;
+  const isPaged = !!paged;
 
   useEffect(() => {
     if (!token || !documentId) return;
 
-    const wsUrl = `${import.meta.env.VITE_WS_BASE_URL}/ws/documents/${documentId}?token=${token}`;
+    // Large frames (e.g. SYNC of a big document) arrive raw-DEFLATE compressed when the browser can inflate them
+    const canInflate = typeof DecompressionStream !== 'undefined';
+    const compressParam = canInflate ? '&compress=deflate-raw' : '';
+    const viewport = initialViewport.current;
+    const pagedParam = isPaged && viewport
+      ? `&mode=paged&unit=${(viewport.unit ?? 'CHARS').toLowerCase()}&start=${viewport.start}&length=${viewport.length}`
+      : '';
+    const wsUrl = `${import.meta.env.VITE_WS_BASE_URL}/ws/documents/${documentId}?token=${token}${compressParam}${pagedParam}`;
     const ws = new WebSocket(wsUrl);
+    ws.binaryType = 'arraybuffer';
     socketRef.current = ws;
 
+    const decode = async (data: string | ArrayBuffer): Promise<string> => {
+      if (typeof data === 'string') return data;
+      const stream = new Blob([data]).stream().pipeThrough(new DecompressionStream('deflate-raw'));
+      return new Response(stream).text();
+    };
+    // Inflating is async — chain frames so they are handled in arrival order
+    let pending: Promise<void> = Promise.resolve();
+    // Revision of the last SYNC / SYNC_WINDOW; ops at or below it are already part of that content
+    let syncedRevision = -1;
+
+    const applyRemote = (op: OperationMessage) => {
+      if (op.type !== 'OPERATION' || (op.clientRevision ?? 0) <= syncedRevision) return;
+      if (isPaged) {
+        setDocWindow((win) => (win ? applyToWindow(win, op) : win));
+      } else {
+        onRemoteOperation(op);
+      }
+    };
+
     ws.onopen = () => {
       console.log('WebSocket connected');
       setIsConnected(true);
     };
 
-    ws.onmessage = (event) => {
+    const handleMessage = (raw: string) => {
       try {
-        const message: OperationMessage = JSON.parse(event.data);
+        const message: ServerMessage = JSON.parse(raw);
         
         if (message.type === 'PRESENCE') {
           if (message.username) {
             addConnectedUser(message.username);
           }
         } else if (message.type === 'SYNC') {
-          // Sync message might contain list of connected users
-          // For now, just acknowledge
+          // Full content on join, and again when a viewer fell too far behind
+          syncedRevision = message.revision ?? 0;
+          onSync(message.content ?? '', syncedRevision);
+        } else if (message.type === 'SYNC_WINDOW') {
+          // Paged mode: window contents on join and after every VIEWPORT
+          syncedRevision = message.revision;
+          setDocWindow({
+            content: message.content,
+            windowStart: message.windowStart,
+            windowLength: message.windowLength,
+            totalLength: message.totalLength,
+            revision: message.revision,
+          });
+        } else if (message.type === 'SHIFT') {
+          if (message.revision > syncedRevision) {
+            setDocWindow((win) => (win ? applyShift(win, message) : win));
+          }
         } else if (message.type === 'OPERATION') {
-          onRemoteOperation(message);
+          applyRemote(message);
+        } else if (message.type === 'BATCH') {
+          // Read-only viewers receive ops in batches on a relaxed cadence
+          message.messages?.forEach(applyRemote);
         }
       } catch (error) {
         console.error('Error parsing WebSocket message:', error);
       }
     };
 
+    ws.onmessage = (event) => {
+      pending = pending
+        .then(() => decode(event.data))
+        .then(handleMessage)
+        .catch((error) => console.error('Error decoding WebSocket message:', error));
+    };
+
     ws.onclose = () => {
       console.log('WebSocket disconnected');
       setIsConnected(false);
@@ -60,8 +178,9 @@ export const useDocumentWebSocket = (
     return () => {
       ws.close();
       setConnectedUsers([]);
+      setDocWindow(null);
     };
-  }, [documentId, token, onRemoteOperation, addConnectedUser, setConnectedUsers]);
+  }, [documentId, token, isPaged, onRemoteOperation, onSync, addConnectedUser, setConnectedUsers]);
 
   const sendOperation = useCallback((op: OperationMessage) => {
     if (socketRef.current?.readyState === WebSocket.OPEN) {
@@ -69,5 +188,11 @@ export const useDocumentWebSocket = (
     }
   }, []);
 
-  return { isConnected, sendOperation };
-};
\ No newline at end of file
+  const setViewport = useCallback((viewport: ViewportRequest) => {
+    if (socketRef.current?.readyState === WebSocket.OPEN) {
+      socketRef.current.send(JSON.stringify({ type: 'VIEWPORT', ...viewport, unit: viewport.unit ?? 'CHARS' }));
+    }
+  }, []);
+
+  return { isConnected, sendOperation, docWindow, setViewport };
+};
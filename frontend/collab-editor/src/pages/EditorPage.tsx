@@ -3,12 +3,16 @@ import { useParams, useNavigate } from 'react-router-dom';
 import { useQuery } from '@tanstack/react-query';
 import { useEditor, EditorContent } from '@tiptap/react';
 import StarterKit from '@tiptap/starter-kit';
-import { getDocument, updateTitle } from '../api/documents.api';
+import { getDocument, getDocumentSummary, updateTitle } from '../api/documents.api';
 import { useDocumentWebSocket } from '../hooks/useDocumentWebSocket';
 import { useDocumentStore } from '../store/useDocumentStore';
 import PresenceBar from '../components/PresenceBar';
 import ChatSidebar from '../components/ChatSidebar';
-import type { OperationMessage } from '../types/document.types';
+import type { OperationMessage, ViewportRequest } from '../types/document.types';
+
+// Documents larger than this open in paged mode: a read-only window instead of the full editor
+const PAGED_MODE_MIN_CHARS = 200_000;
+const PAGE_CHARS = 50_000;
 
 const EditorPage: React.FC = () => {
   const { id } = useParams<{ id: string }>();
@@ -20,11 +24,23 @@ const EditorPage: React.FC = () => {
   const lastContentRef = useRef('');
   const connectedUsers = useDocumentStore((s) => s.connectedUsers);
 
-  const { data: document, isLoading, error } = useQuery({
+  // The summary carries the content length, so the mode is chosen before any content is downloaded
+  const { data: summary, isLoading: isSummaryLoading, error: summaryError } = useQuery({
+    queryKey: ['document-summary', id],
+    queryFn: () => getDocumentSummary(id!),
+    enabled: !!id,
+  });
+  const isPaged = !!summary && (summary.contentLength ?? 0) > PAGED_MODE_MIN_CHARS;
+
+  // Full content only for documents opened in the editor; paged ones are read through their window
+  const { data: fullDocument, isLoading: isContentLoading, error: contentError } = useQuery({
     queryKey: ['document', id],
     queryFn: () => getDocument(id!),
-    enabled: !!id,
+    enabled: !!id && !!summary && !isPaged,
   });
+  const document = fullDocument ?? summary;
+  const isLoading = isSummaryLoading || (!isPaged && isContentLoading);
+  const error = summaryError ?? contentError;
 
   // Initialize TipTap editor
   const editor = useEditor({
@@ -72,17 +88,43 @@ const EditorPage: React.FC = () => {
     }
   }, [editor]);
 
-  // WebSocket connection
-  const { isConnected, sendOperation } = useDocumentWebSocket(id!, handleRemoteOperation);
+  // Authoritative content from the server; newer than the REST snapshot while others are editing
+  const handleSync = useCallback((content: string) => {
+    if (!editor) return;
+
+    isApplyingRemote.current = true;
+    try {
+      editor.commands.setContent(content);
+      lastContentRef.current = content;
+    } finally {
+      isApplyingRemote.current = false;
+    }
+  }, [editor]);
+
+  // WebSocket connection — opened once the mode is known (paged) or the content is loaded
+  const paged: ViewportRequest | undefined = isPaged
+    ? { unit: 'CHARS', start: 0, length: PAGE_CHARS }
+    : undefined;
+  const { isConnected, sendOperation, docWindow, setViewport } = useDocumentWebSocket(
+    isPaged || fullDocument ? id! : '', handleRemoteOperation, handleSync, paged);
+
+  const showPage = (start: number) => {
+    setViewport({ unit: 'CHARS', start: Math.max(start, 0), length: PAGE_CHARS });
+  };
+
+  // Update editor content when document loads; paged documents are never loaded into the editor
+  useEffect(() => {
+    if (editor && fullDocument?.contentSnapshot) {
+      editor.commands.setContent(fullDocument.contentSnapshot);
+      lastContentRef.current = fullDocument.contentSnapshot;
+    }
+  }, [editor, fullDocument]);
 
-  // Update editor content when document loads
   useEffect(() => {
-    if (editor && document?.contentSnapshot) {
-      editor.commands.setContent(document.contentSnapshot);
-      lastContentRef.current = document.contentSnapshot;
-      setTitleValue(document.title);
+    if (summary) {
+      setTitleValue(summary.title);
     }
-  }, [editor, document]);
+  }, [summary]);
 
   const handleTitleEdit = () => {
     setIsEditingTitle(true);
@@ -172,10 +214,38 @@ const EditorPage: React.FC = () => {
           </div>
         </div>
 
-        {/* Editor */}
-        <div className="flex-1 overflow-y-auto">
-          <EditorContent editor={editor} />
-        </div>
+        {/* Editor, or the subscribed window of a large document */}
+        {paged ? (
+          <div className="flex-1 flex flex-col overflow-hidden">
+            <div className="px-8 py-2 text-sm text-gray-500 flex items-center space-x-2 border-b border-gray-200">
+              <span>
+                {docWindow
+                  ? `Large document (read-only): characters ${docWindow.windowStart + 1}–${docWindow.windowStart + docWindow.windowLength} of ${docWindow.totalLength}`
+                  : 'Loading window...'}
+              </span>
+              <div className="flex-1"></div>
+              <button
+                onClick={() => docWindow && showPage(docWindow.windowStart - PAGE_CHARS)}
+                disabled={!docWindow || docWindow.windowStart === 0}
+                className="px-3 py-1 rounded hover:bg-gray-100 disabled:opacity-50"
+              >
+                Previous
+              </button>
+              <button
+                onClick={() => docWindow && showPage(docWindow.windowStart + docWindow.windowLength)}
+                disabled={!docWindow || docWindow.windowStart + docWindow.windowLength >= docWindow.totalLength}
+                className="px-3 py-1 rounded hover:bg-gray-100 disabled:opacity-50"
+              >
+                Next
+              </button>
+            </div>
+            <pre className="flex-1 overflow-y-auto p-8 whitespace-pre-wrap text-sm">{docWindow?.content}</pre>
+          </div>
+        ) : (
+          <div className="flex-1 overflow-y-auto">
+            <EditorContent editor={editor} />
+          </div>
+        )}
 
         {/* Toolbar */}
         <div className="border-t border-gray-200 px-4 py-2 flex items-center space-x-2">
@@ -1,14 +1,44 @@
 export interface DocumentResponse {
   id: string;
   title: string;
-  contentSnapshot: string;
+  contentSnapshot: string | null; // null on summaries
+  contentLength: number | null; // chars; also set on summaries
   currentRevision: number;
   ownerUsername: string;
   collaboratorCount: number;
+  forkedFromId: string | null;
   createdAt: string;
   updatedAt: string;
 }
 
+export interface DocumentSearchHit {
+  id: string;
+  title: string;
+  ownerUsername: string;
+  snippet: string;
+  rank: number;
+  updatedAt: string;
+}
+
+export interface DocumentSearchResponse {
+  hits: DocumentSearchHit[];
+  nextCursor: string | null;
+}
+
+export interface SemanticSearchHit {
+  documentId: string;
+  documentTitle: string;
+  chunkId: string;
+  chunkIndex: number | null;
+  content: string;
+  score: number;
+}
+
+export interface SemanticSearchResponse {
+  hits: SemanticSearchHit[];
+  nextCursor: string | null;
+}
+
 export interface DocumentCreateRequest {
   title: string;
   initialContent?: string;
@@ -22,14 +52,47 @@ export interface CollaboratorResponse {
 }
 
 export interface OperationMessage {
-  type: 'OPERATION' | 'PRESENCE' | 'SYNC';
+  type: 'OPERATION' | 'PRESENCE' | 'SYNC' | 'BATCH';
   opType?: 'INSERT' | 'DELETE';
   position?: number;
   content?: string;
   length?: number;
-  clientRevision?: number;
+  clientRevision?: number; // on ops from the server: the revision the op produced
   userId?: string;
   username?: string;
+  revision?: number; // SYNC: revision of the content; BATCH: revision of the last op
+  messages?: OperationMessage[]; // for BATCH
+}
+
+export type ViewportUnit = 'CHARS' | 'LINES';
+
+// Paged mode (?mode=paged): the window a client is subscribed to; LINES is resolved to chars by the server
+export interface ViewportRequest {
+  unit?: ViewportUnit;
+  start: number;
+  length: number;
+}
+
+// Contents of the subscribed window, kept current from SYNC_WINDOW, in-window ops and SHIFT
+export interface DocumentWindow {
+  content: string;
+  windowStart: number;
+  windowLength: number;
+  totalLength: number;
+  revision: number;
+}
+
+export interface WindowSyncMessage extends DocumentWindow {
+  type: 'SYNC_WINDOW';
+}
+
+// An edit outside the window: only offsets and the document length change
+export interface ShiftMessage {
+  type: 'SHIFT';
+  position: number;
+  delta: number;
+  totalLength: number;
+  revision: number;
 }
 
 export interface ChatRequest {